@@ -0,0 +1,573 @@
+package mwong.myprojects.fifteenpuzzle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import mwong.myprojects.eightpuzzle.Direction;
+import mwong.myprojects.utilities.CheckpointFile;
+import mwong.myprojects.utilities.Stopwatch;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac AdditivePatternDatabase.java
+ *  Execution:   java AdditivePatternDatabase [PD663 | PD78]
+ *  Dependencies: PatternPartition.java, Heuristic.java, Direction.java, Stopwatch.java,
+ *                CheckpointFile.java
+ *
+ *  A immutable data type of 15 puzzle additive disjoint pattern database.
+ *  Each group of tiles has a table of the minimum moves of its own tiles
+ *  to the goal state, indexed by the partial permutation rank of the
+ *  positions of its tiles.  The sum of all groups is admissible.  A long
+ *  generation writes a checkpoint at the end of a layer once a minute, an
+ *  interrupted generation resumes from the last checkpoint.
+ *
+ ****************************************************************************/
+
+public class AdditivePatternDatabase implements Heuristic {
+    private static final String DIRECTORY = "database";
+    private static final String SEPARATOR = System.getProperty("file.separator");
+    private static final int SIZE = 16;
+    private static final int N = 4;
+    // data file header : magic, version, number of states, number of tiles, checksum
+    // followed by the pattern values
+    private static final int FILE_MAGIC = 0x50443135;
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    // minimum number of seconds between 2 checkpoints of the generation
+    private static final int CHECKPOINT_SECONDS = 60;
+
+    private final PatternPartition partition;
+    private final byte[][] groups;
+    // group number of each tile
+    private final int[] groupOf;
+    private final ByteBuffer[] patternValue;
+
+    /**
+     * Initializes the additive pattern database of the given partition.
+     *
+     * @param partition the given PatternPartition of tiles
+     */
+    public AdditivePatternDatabase(PatternPartition partition) {
+        this.partition = partition;
+        groups = new byte[partition.size()][];
+        groupOf = new int[SIZE];
+        Arrays.fill(groupOf, -1);
+        patternValue = new ByteBuffer[partition.size()];
+        for (int group = 0; group < partition.size(); group++) {
+            groups[group] = partition.getGroup(group);
+            for (byte tile : groups[group]) {
+                groupOf[tile] = group;
+            }
+        }
+
+        // if database file exists, load from file
+        // otherwise re-generate and save in file
+        for (int group = 0; group < groups.length; group++) {
+            String filepath = DIRECTORY + SEPARATOR + "pd15_" + partition.toString().toLowerCase()
+                    + "_" + group + ".db";
+            try {
+                Stopwatch stopwatch = new Stopwatch();
+                patternValue[group] = loadFile(filepath, groups[group].length);
+                System.out.println("Pattern Database 15puzzle " + partition + " group " + group
+                        + " - load from data file successed : " + stopwatch.currentTime() + "s");
+            } catch (Exception ex) {
+                (new File(filepath)).delete();
+                CheckpointFile checkpoint = new CheckpointFile(
+                        Paths.get(filepath + ".checkpoint"));
+                byte[] table = genPattern(groups[group], checkpoint);
+                patternValue[group] = ByteBuffer.wrap(table);
+                try {
+                    Stopwatch stopwatch = new Stopwatch();
+                    saveFile(filepath, groups[group].length, table);
+                    checkpoint.delete();
+                    System.out.println("Pattern Database 15puzzle " + partition + " group " + group
+                            + " - save data set in file successed : "
+                            + stopwatch.currentTime() + "s");
+                } catch (Exception ex2) {
+                    (new File(filepath)).delete();
+                }
+            }
+        }
+    }
+
+    // returns the number of partial permutation of k positions out of 16
+    private static long sizeOf(int k) {
+        long size = 1;
+        for (int i = 0; i < k; i++) {
+            size *= SIZE - i;
+        }
+        return size;
+    }
+
+    // load the pattern values of a group from file, the table is used in place
+    // of the read only memory mapped file
+    private static ByteBuffer loadFile(String filepath, int k) throws IOException {
+        int size = (int) sizeOf(k);
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath),
+                StandardOpenOption.READ)) {
+            if (channel.size() != HEADER_SIZE + (long) size) {
+                throw new IOException("Pattern Database 15puzzle - invalid data file size");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE + (long) size);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != FILE_MAGIC || buffer.getInt(4) != FILE_VERSION
+                || buffer.getInt(8) != size || buffer.getInt(12) != k) {
+            throw new IOException("Pattern Database 15puzzle - invalid data file header");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(HEADER_SIZE));
+        if (buffer.getLong(16) != crc.getValue()) {
+            throw new IOException("Pattern Database 15puzzle - data file checksum mismatch");
+        }
+        return buffer.slice(HEADER_SIZE, size);
+    }
+
+    // save the pattern values of a group in file, write in a temporary file
+    // then rename to the data file
+    private static void saveFile(String filepath, int k, byte[] table) throws IOException {
+        if (!(new File(DIRECTORY)).exists()) {
+            (new File(DIRECTORY)).mkdir();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(table);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(table.length).putInt(k);
+        header.putLong(crc.getValue());
+        header.flip();
+
+        Path temp = Paths.get(filepath + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer[] buffers = {header, ByteBuffer.wrap(table)};
+            while (buffers[1].hasRemaining()) {
+                channel.write(buffers);
+            }
+        }
+        Files.move(temp, Paths.get(filepath), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     *  Returns the partial permutation rank of the positions.
+     *
+     *  @param position the given positions (0 to 15) of k tiles
+     *  @return the partial permutation rank of the positions
+     */
+    protected static int rank(int[] position) {
+        int used = 0;
+        int rank = 0;
+        for (int i = 0; i < position.length; i++) {
+            int lehmer = position[i] - Integer.bitCount(used & ((1 << position[i]) - 1));
+            used |= 1 << position[i];
+            rank = rank * (SIZE - i) + lehmer;
+        }
+        return rank;
+    }
+
+    // convert the partial permutation rank back to the positions of k tiles
+    private static void unrank(int rank, int[] position) {
+        int k = position.length;
+        for (int i = k - 1; i >= 0; i--) {
+            position[i] = rank % (SIZE - i);
+            rank = rank / (SIZE - i);
+        }
+        int used = 0;
+        for (int i = 0; i < k; i++) {
+            int unused = ~used & 0xFFFF;
+            for (int n = position[i]; n > 0; n--) {
+                unused &= unused - 1;
+            }
+            position[i] = Integer.numberOfTrailingZeros(unused);
+            used |= 1 << position[i];
+        }
+    }
+
+    /**
+     *  Generate the pattern values of the group of tiles by breadth first search
+     *  from the goal state, only the moves of the pattern tiles count, the moves
+     *  of other tiles cost nothing.
+     *
+     *  @param group the given tiles of the group
+     *  @return a byte array of the pattern values of the group
+     */
+    protected static byte[] genPattern(byte[] group) {
+        return genPattern(group, null);
+    }
+
+    /**
+     *  Generate the pattern values of the group of tiles by breadth first search
+     *  from the goal state, resume from the checkpoint if exists.  At the end
+     *  of a layer, the pattern values, the visited states, the next layer and
+     *  the depth are saved in the checkpoint if the last one is older than a
+     *  minute.  The checkpoint is kept, the caller deletes it once saved.
+     *
+     *  @param group the given tiles of the group
+     *  @param checkpoint the given CheckpointFile of the generation, null for none
+     *  @return a byte array of the pattern values of the group
+     */
+    protected static byte[] genPattern(byte[] group, CheckpointFile checkpoint) {
+        int k = group.length;
+        long size = sizeOf(k);
+        byte[] patternValue = new byte[(int) size];
+        Arrays.fill(patternValue, (byte) -1);
+        // a state is the rank of the pattern tiles with the position of space
+        long[] visited = new long[(int) ((size * SIZE + 63) >>> 6)];
+        int[] position = new int[k];
+        for (int i = 0; i < k; i++) {
+            position[i] = group[i] - 1;
+        }
+
+        LongStack current = new LongStack();
+        LongStack next = new LongStack();
+        current.push((long) rank(position) * SIZE + (SIZE - 1));
+        byte moves = 0;
+        long count = 0;
+        System.out.println("Pattern Database 15puzzle - generate group : "
+                + Arrays.toString(group));
+        long[] restored = restore(checkpoint, group, patternValue, visited, current);
+        if (restored != null) {
+            moves = (byte) restored[0];
+            count = restored[1];
+            System.out.println("Pattern Database 15puzzle - resume at moves : " + moves
+                    + "\tscanned : " + count);
+        }
+        Stopwatch stopwatch = new Stopwatch();
+        Stopwatch lastCheckpoint = new Stopwatch();
+        while (!current.isEmpty()) {
+            long layer = 0;
+            while (!current.isEmpty()) {
+                long state = current.pop();
+                int word = (int) (state >>> 6);
+                if ((visited[word] & (1L << state)) != 0) {
+                    continue;
+                }
+                visited[word] |= 1L << state;
+                int rank = (int) (state / SIZE);
+                int zero = (int) (state % SIZE);
+                if (patternValue[rank] == -1) {
+                    patternValue[rank] = moves;
+                    layer++;
+                }
+
+                unrank(rank, position);
+                int occupied = 0;
+                for (int i = 0; i < k; i++) {
+                    occupied |= 1 << position[i];
+                }
+                for (int dir = 0; dir < 4; dir++) {
+                    int nextZero = move(zero, dir);
+                    if (nextZero == -1) {
+                        continue;
+                    }
+                    if ((occupied & (1 << nextZero)) == 0) {
+                        // move other tile, no cost
+                        long nextState = (long) rank * SIZE + nextZero;
+                        if ((visited[(int) (nextState >>> 6)] & (1L << nextState)) == 0) {
+                            current.push(nextState);
+                        }
+                    } else {
+                        // move pattern tile, cost 1 move
+                        int i = 0;
+                        while (position[i] != nextZero) {
+                            i++;
+                        }
+                        position[i] = zero;
+                        long nextState = (long) rank(position) * SIZE + nextZero;
+                        position[i] = nextZero;
+                        if ((visited[(int) (nextState >>> 6)] & (1L << nextState)) == 0) {
+                            next.push(nextState);
+                        }
+                    }
+                }
+            }
+            count += layer;
+            if (layer > 0) {
+                System.out.println("moves : " + moves + "\tcount : " + layer
+                        + "\tscanned : " + count + "\t end at : " + stopwatch.currentTime());
+            }
+            LongStack swap = current;
+            current = next;
+            next = swap;
+            moves++;
+            if (checkpoint != null && !current.isEmpty()
+                    && lastCheckpoint.currentTime() >= CHECKPOINT_SECONDS) {
+                save(checkpoint, group, moves, count, patternValue, visited, current);
+                lastCheckpoint.reset();
+            }
+        }
+        return patternValue;
+    }
+
+    // write the checkpoint of the generation at the start of a layer, the
+    // generation goes on without checkpoint if it cannot be written
+    private static void save(CheckpointFile checkpoint, byte[] group, byte moves, long count,
+            byte[] patternValue, long[] visited, LongStack frontier) {
+        try {
+            Stopwatch stopwatch = new Stopwatch();
+            checkpoint.write(out -> {
+                out.put(group, 0, group.length);
+                out.putInt(moves);
+                out.putLong(count);
+                out.putInt(frontier.n);
+                out.put(frontier.a, 0, frontier.n);
+                out.put(patternValue, 0, patternValue.length);
+                out.put(visited, 0, visited.length);
+            });
+            System.out.println("Pattern Database 15puzzle - checkpoint at moves : " + moves
+                    + "\t" + stopwatch.currentTime() + "s");
+        } catch (IOException ex) {
+            System.out.println("Pattern Database 15puzzle - checkpoint failed : " + ex);
+        }
+    }
+
+    // read the checkpoint of the same group to the pattern values, visited
+    // states and the frontier; returns the depth and the number of patterns
+    // scanned, null if no checkpoint and the tables are unchanged
+    private static long[] restore(CheckpointFile checkpoint, byte[] group, byte[] patternValue,
+            long[] visited, LongStack frontier) {
+        if (checkpoint == null || !checkpoint.exists()) {
+            return null;
+        }
+        long start = frontier.a[0];
+        long[] restored = new long[2];
+        boolean read;
+        try {
+            read = checkpoint.read(in -> {
+                byte[] tiles = new byte[group.length];
+                in.get(tiles, 0, tiles.length);
+                if (!Arrays.equals(tiles, group)) {
+                    throw new IOException("checkpoint of another group");
+                }
+                restored[0] = in.getInt();
+                restored[1] = in.getLong();
+                int n = in.getInt();
+                // a frontier holds at most every state of the group
+                if (n < 0 || n > (long) patternValue.length * SIZE) {
+                    throw new IOException("invalid frontier size " + n);
+                }
+                frontier.reserve(n);
+                in.get(frontier.a, 0, n);
+                frontier.n = n;
+                in.get(patternValue, 0, patternValue.length);
+                in.get(visited, 0, visited.length);
+            });
+        } catch (IOException ex) {
+            read = false;
+        }
+        if (!read) {
+            System.out.println("Pattern Database 15puzzle - checkpoint ignored : "
+                    + checkpoint.getPath());
+            Arrays.fill(patternValue, (byte) -1);
+            Arrays.fill(visited, 0);
+            frontier.n = 0;
+            frontier.push(start);
+            return null;
+        }
+        return restored;
+    }
+
+    // returns the position of space after the move, -1 if not possible
+    private static int move(int zero, int dir) {
+        switch (dir) {
+        // RIGHT
+        case 0:
+            return (zero % N < N - 1) ? zero + 1 : -1;
+        // DOWN
+        case 1:
+            return (zero < SIZE - N) ? zero + N : -1;
+        // LEFT
+        case 2:
+            return (zero % N > 0) ? zero - 1 : -1;
+        // UP
+        default:
+            return (zero >= N) ? zero - N : -1;
+        }
+    }
+
+    /**
+     *  Returns the partition of tiles.
+     *
+     *  @return the PatternPartition of tiles
+     */
+    public PatternPartition getPartition() {
+        return partition;
+    }
+
+    /**
+     *  Returns the group number of the tile, -1 for space.
+     *
+     *  @param tile the given tile from 0 to 15
+     *  @return the group number of the tile, -1 for space
+     */
+    protected int getGroup(int tile) {
+        return groupOf[tile];
+    }
+
+    /**
+     *  Returns the index of the group from the positions of every tile.
+     *
+     *  @param group the given group number
+     *  @param positionOf the given position of each tile, indexed by tile
+     *  @param buffer the given integer array of size of the group to reuse
+     *  @return the index of the group
+     */
+    protected int getKeyIndex(int group, byte[] positionOf, int[] buffer) {
+        byte[] tiles = groups[group];
+        for (int i = 0; i < tiles.length; i++) {
+            buffer[i] = positionOf[tiles[i]];
+        }
+        return rank(buffer);
+    }
+
+    /**
+     *  Returns the pattern value of the index of the group.
+     *
+     *  @param group the given group number
+     *  @param index the given index of the group
+     *  @return number of the pattern value of the index of the group
+     */
+    protected int getPDvalue(int group, int index) {
+        return patternValue[group].get(index);
+    }
+
+    /**
+     *  Returns the size of the group.
+     *
+     *  @param group the given group number
+     *  @return number of tiles of the group
+     */
+    protected int getGroupSize(int group) {
+        return groups[group].length;
+    }
+
+    /**
+     *  Returns the sum of the pattern values of every group of the 4-by-4 board,
+     *  where tiles starts from top row then left to right order.  The
+     *  positions are packed in a long, no allocation.
+     *
+     *  @param tiles a byte array of tiles
+     *  @return the sum of the pattern values of every group
+     */
+    public int getPDvalue(byte[] tiles) {
+        long positions = positions(tiles);
+        int value = 0;
+        for (int group = 0; group < groups.length; group++) {
+            value += getPDvalue(group, rank(groups[group], positions));
+        }
+        return value;
+    }
+
+    /**
+     *  Returns the sum of the pattern values of every group of the 4-by-4 board.
+     *
+     *  @param tiles a byte array of tiles
+     *  @return the sum of the pattern values of every group
+     */
+    public int estimate(byte[] tiles) {
+        return getPDvalue(tiles);
+    }
+
+    /**
+     *  Returns the sum of the pattern values after a tile moved, only the
+     *  group of the moved tile is looked up again.
+     *
+     *  @param tiles a byte array of tiles after the move
+     *  @param value the estimate before the move
+     *  @param tile the moved tile
+     *  @param from the position of the tile before the move
+     *  @param to the position of the tile after the move
+     *  @param dir the Direction of the space moved
+     *  @return the sum of the pattern values after the move
+     */
+    public int update(byte[] tiles, int value, int tile, int from, int to, Direction dir) {
+        long positions = positions(tiles);
+        int group = groupOf[tile];
+        long before = (positions & ~(0x0FL << (tile * 4))) | ((long) from << (tile * 4));
+        return value - getPDvalue(group, rank(groups[group], before)) 
+                + getPDvalue(group, rank(groups[group], positions));
+    }
+
+    // returns the position of each tile packed in 4 bits
+    private static long positions(byte[] tiles) {
+        long positions = 0;
+        for (int i = 0; i < SIZE; i++) {
+            positions |= (long) i << (tiles[i] * 4);
+        }
+        return positions;
+    }
+
+    // returns the partial permutation rank of the tiles from the packed positions
+    private static int rank(byte[] tiles, long positions) {
+        int used = 0;
+        int rank = 0;
+        for (int i = 0; i < tiles.length; i++) {
+            int pos = (int) (positions >>> (tiles[i] * 4)) & 0x0F;
+            int lehmer = pos - Integer.bitCount(used & ((1 << pos) - 1));
+            used |= 1 << pos;
+            rank = rank * (SIZE - i) + lehmer;
+        }
+        return rank;
+    }
+
+    // a growable stack of primitive long
+    private static class LongStack {
+        private long[] a = new long[1 << 16];
+        private int n;
+
+        boolean isEmpty() {
+            return n == 0;
+        }
+
+        void push(long value) {
+            if (n == a.length) {
+                a = Arrays.copyOf(a, a.length * 2);
+            }
+            a[n++] = value;
+        }
+
+        // grow the array to hold the given number of values
+        void reserve(int size) {
+            if (size > a.length) {
+                a = Arrays.copyOf(a, size);
+            }
+        }
+
+        long pop() {
+            long value = a[--n];
+            if (n == 0 && a.length > 1 << 16) {
+                a = new long[1 << 16];
+            }
+            return value;
+        }
+    }
+
+    /**
+     *  test client create the 15 puzzle additive pattern database.
+     *
+     *  @param args the partition PD663 or PD78, default PD663
+     */
+    public static void main(String[] args) {
+        PatternPartition partition = PatternPartition.PD663;
+        if (args.length > 0) {
+            partition = PatternPartition.valueOf(args[0]);
+        }
+        AdditivePatternDatabase pd = new AdditivePatternDatabase(partition);
+        byte[] goal = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 0};
+        byte[] board = {0, 12, 9, 13, 15, 11, 10, 14, 3, 7, 2, 5, 4, 8, 6, 1};
+        System.out.println("goal : " + pd.getPDvalue(goal) + "\tboard : " + pd.getPDvalue(board));
+    }
+}
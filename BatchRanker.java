@@ -0,0 +1,259 @@
+package mwong.myprojects.eightpuzzle;
+
+import java.util.Random;
+
+import mwong.myprojects.utilities.Stopwatch;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac BatchRanker.java
+ *  Execution:   java --add-modules jdk.incubator.vector BatchRanker [boards]
+ *  Dependencies: PatternDatabase.java, Board.java, SolverMetrics.java, Stopwatch.java,
+ *                vector/VectorBatchRanker.java (optional, compiled apart)
+ *
+ *  BatchRanker convert a contiguous array of 9 bytes boards to the pattern
+ *  index (permutation rank) and the minimum number of moves of each board,
+ *  many boards at a time instead of a lookup per board.  The rank kernel
+ *  use the Vector API if the jdk.incubator.vector module is in the boot
+ *  layer (--add-modules jdk.incubator.vector), otherwise the scalar kernel;
+ *  both give the same result.
+ *
+ *  rank     : pattern index, -1 if no solution, -2 if not a board
+ *  distance : minimum number of moves, -1 if no solution, -2 if not a board
+ *
+ ****************************************************************************/
+
+public class BatchRanker {
+    private static final int SIZE = 9;
+    private static final int SIZE_PERMUTATION = 20160;
+    private static final int NO_SOLUTION = -1;
+    private static final int INVALID = -2;
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL = "mwong.myprojects.eightpuzzle.VectorBatchRanker";
+    private final PatternDatabase patterns;
+    private final Kernel kernel;
+
+    // rank kernel of a range of boards, the range is checked by the caller
+    interface Kernel {
+        // the rank of boards first to first + count - 1 stored at the same
+        // positions of ranks
+        void rank(byte[] boards, int first, int count, int[] ranks);
+
+        // number of boards of each step
+        int lanes();
+    }
+
+    private static final Kernel SCALAR = new Kernel() {
+        public void rank(byte[] boards, int first, int count, int[] ranks) {
+            for (int i = first; i < first + count; i++) {
+                ranks[i] = rankOf(boards, i * SIZE);
+            }
+        }
+
+        public int lanes() {
+            return 1;
+        }
+    };
+
+    /**
+     * Initializes BatchRanker with the vector kernel if supported.
+     */
+    public BatchRanker() {
+        this(true);
+    }
+
+    /**
+     * Initializes BatchRanker with the vector kernel if requested and supported,
+     * otherwise the scalar kernel.
+     *
+     * @param vectorized the given boolean, true to use the vector kernel if supported
+     */
+    public BatchRanker(boolean vectorized) {
+        patterns = Board.getPatterns();
+        kernel = vectorized ? vectorKernel() : SCALAR;
+    }
+
+    // returns the vector kernel if the module is in the boot layer,
+    // otherwise the scalar kernel
+    private static Kernel vectorKernel() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return SCALAR;
+        }
+        try {
+            return (Kernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            return SCALAR;
+        }
+    }
+
+    /**
+     * Returns the kernel in use is the vector kernel.
+     *
+     * @return true if the ranks are computed by the vector kernel, false otherwise
+     */
+    public boolean isVectorized() {
+        return kernel != SCALAR;
+    }
+
+    /**
+     * Returns the number of boards of each vector, 1 for the scalar kernel.
+     *
+     * @return number of boards of each vector
+     */
+    public int getLanes() {
+        return kernel.lanes();
+    }
+
+    /**
+     * Converts the boards to the pattern index; -1 if no solution, -2 if not a board.
+     * Board i is tiles boards[i * 9] to boards[i * 9 + 8] from top row then
+     * left to right order, its rank is stored in ranks[i].
+     *
+     * @param boards the given boards of 9 bytes each
+     * @param first the given number of the first board
+     * @param count the given number of boards
+     * @param ranks the given array of ranks
+     */
+    public void rank(byte[] boards, int first, int count, int[] ranks) {
+        checkRange(boards, first, count, ranks.length);
+        kernel.rank(boards, first, count, ranks);
+        int unsolvable = 0;
+        for (int i = first; i < first + count; i++) {
+            if (ranks[i] == NO_SOLUTION) {
+                unsolvable++;
+            }
+        }
+        SolverMetrics.getInstance().recordLookups(count, unsolvable);
+    }
+
+    /**
+     * Converts the boards to the pattern index and the minimum number of moves;
+     * -1 if no solution, -2 if not a board.  Board i is tiles boards[i * 9] to
+     * boards[i * 9 + 8], its rank is stored in ranks[i] and its number of
+     * moves in distances[i].
+     *
+     * @param boards the given boards of 9 bytes each
+     * @param first the given number of the first board
+     * @param count the given number of boards
+     * @param ranks the given array of ranks
+     * @param distances the given array of minimum number of moves
+     */
+    public void lookup(byte[] boards, int first, int count, int[] ranks, byte[] distances) {
+        checkRange(boards, first, count, distances.length);
+        rank(boards, first, count, ranks);
+        for (int i = first; i < first + count; i++) {
+            int rank = ranks[i];
+            distances[i] = (byte) ((rank < 0) ? rank : patterns.getPDvalue(rank));
+        }
+    }
+
+    // throws IndexOutOfBoundsException if the boards are out of range
+    private static void checkRange(byte[] boards, int first, int count, int length) {
+        if (first < 0 || count < 0 || first + count > length
+                || (long) (first + count) * SIZE > boards.length) {
+            throw new IndexOutOfBoundsException("boards " + first + " to "
+                    + (first + count - 1));
+        }
+    }
+
+    // returns the rank of the board at the offset, zero position * 20160 +
+    // lehmer rank of the first 6 tiles; -1 if odd inversion, -2 if not a board
+    static int rankOf(byte[] boards, int offset) {
+        int used = 0;
+        int zeroPos = 0;
+        int inversion = 0;
+        int rank = 0;
+        int n = 0;
+        for (int pos = 0; pos < SIZE; pos++) {
+            int tile = boards[offset + pos];
+            if (tile < 0 || tile >= SIZE || (used & (1 << tile)) != 0) {
+                return INVALID;
+            }
+            if (tile == 0) {
+                zeroPos = pos;
+            } else {
+                // number of smaller tiles not used yet
+                int lehmer = tile - 1 - Integer.bitCount(used & ((1 << tile) - 2));
+                inversion += lehmer;
+                if (n < 6) {
+                    rank = rank * (8 - n) + lehmer;
+                }
+                n++;
+            }
+            used |= 1 << tile;
+        }
+        if ((inversion & 1) == 1) {
+            return NO_SOLUTION;
+        }
+        return zeroPos * SIZE_PERMUTATION + rank;
+    }
+
+    /**
+     *  test client verify the ranks of random boards against the pattern
+     *  database and compare the time of each kernel.
+     *
+     *  @param args [boards], 10,000,000 by default
+     */
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 10000000;
+        PatternDatabase patterns = Board.getPatterns();
+        Random random = new Random(20160101L);
+        byte[] boards = new byte[count * SIZE];
+        byte[] tiles = new byte[SIZE];
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                int k = random.nextInt(j + 1);
+                tiles[j] = tiles[k];
+                tiles[k] = (byte) j;
+            }
+            // 1 in 16 boards is not a board
+            if (random.nextInt(16) == 0) {
+                tiles[random.nextInt(SIZE)] = (byte) (random.nextInt(20) - 5);
+            }
+            System.arraycopy(tiles, 0, boards, i * SIZE, SIZE);
+        }
+
+        BatchRanker[] rankers = {new BatchRanker(false), new BatchRanker(true)};
+        int[] expected = new int[count];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(boards, i * SIZE, tiles, 0, SIZE);
+            int used = 0;
+            for (byte tile : tiles) {
+                used |= (tile >= 0 && tile < SIZE) ? 1 << tile : 1 << SIZE;
+            }
+            expected[i] = (used == (1 << SIZE) - 1) ? patterns.getKeyIndex(tiles) : INVALID;
+        }
+        int[] ranks = new int[count];
+        byte[] distances = new byte[count];
+        for (BatchRanker ranker : rankers) {
+            String name = ranker.isVectorized() ? "vector (" + ranker.getLanes() + " lanes)"
+                    : "scalar";
+            double best = Double.MAX_VALUE;
+            for (int round = 0; round < 5; round++) {
+                Stopwatch stopwatch = new Stopwatch();
+                ranker.rank(boards, 0, count, ranks);
+                best = Math.min(best, stopwatch.currentTime());
+            }
+            for (int i = 0; i < count; i++) {
+                if (ranks[i] != expected[i]) {
+                    System.out.println(name + " - board " + i + " rank " + ranks[i]
+                            + ", expected " + expected[i]);
+                    return;
+                }
+            }
+            ranker.lookup(boards, 0, count, ranks, distances);
+            for (int i = 0; i < count; i++) {
+                int moves = (expected[i] < 0) ? expected[i] : patterns.getPDvalue(expected[i]);
+                if (distances[i] != moves) {
+                    System.out.println(name + " - board " + i + " distance " + distances[i]
+                            + ", expected " + moves);
+                    return;
+                }
+            }
+            System.out.println(String.format("BatchRanker %-18s - %d boards ranked : %.3fs, "
+                    + "%.1f ns/board", name, count, best, best * 1e9 / count));
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package mwong.myprojects.eightpuzzle;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import mwong.myprojects.utilities.Stopwatch;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac BatchSolver.java
+ *  Execution:   java BatchSolver
+ *  Dependencies : Board.java, Solver.java, Direction.java, SolverMetrics.java,
+ *                 Stopwatch.java
+ *
+ *  BatchSolver solve many puzzle8 (3-by-3 boards) on multiple cores, all
+ *  threads share the read only pattern database
+ *
+ ****************************************************************************/
+
+public class BatchSolver {
+    private static final int THRESHOLD = 256;
+    private final ForkJoinPool pool;
+
+    /**
+     * Result of a solved board, the minimum number of moves and the direction
+     * of each move to the goal state.
+     */
+    public static final class Result {
+        private final int moves;
+        private final long packedMoves;
+
+        private Result(int moves, long packedMoves) {
+            this.moves = moves;
+            this.packedMoves = packedMoves;
+        }
+
+        /**
+         * Returns the minimum number of moves to solve the board; -1 if no solution.
+         *
+         * @return minimum number of moves to solve the board; -1 if no solution
+         */
+        public int moves() {
+            return moves;
+        }
+
+        /**
+         * Returns the direction of the given move.
+         *
+         * @param step the given move from 0 to moves - 1
+         * @return direction of the given move
+         */
+        public Direction getDirection(int step) {
+            if (step < 0 || step >= moves) {
+                throw new IndexOutOfBoundsException("step " + step);
+            }
+            return Solver.unpackDirection(packedMoves, step);
+        }
+
+        /**
+         * Returns the moves packed in 2 bits per move from the lowest bits.
+         *
+         * @return moves packed in 2 bits per move from the lowest bits
+         */
+        public long packedMoves() {
+            return packedMoves;
+        }
+
+        /**
+         * Returns the moves encoded as one letter of each direction (R, D, L, U).
+         *
+         * @return a string of moves encoded as one letter of each direction
+         */
+        public String encodedMoves() {
+            StringBuilder s = new StringBuilder(Math.max(moves, 0));
+            for (int i = 0; i < moves; i++) {
+                s.append("RDLU".charAt(Solver.unpackDirection(packedMoves, i).getValue()));
+            }
+            return s.toString();
+        }
+
+        /**
+         * Returns a string representation of the result.
+         *
+         * @return a string representation of the result
+         */
+        public String toString() {
+            return moves + " " + encodedMoves();
+        }
+    }
+
+    /**
+     * Initializes BatchSolver using all processors.
+     */
+    public BatchSolver() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Initializes BatchSolver with the given parallelism level.
+     *
+     * @param parallelism the given number of worker threads
+     */
+    public BatchSolver(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        // load the pattern database before any worker thread use it
+        new Board();
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Returns the result of a single board.
+     *
+     * @param board the given Board object
+     * @return the Result of the board
+     */
+    public Result solve(Board board) {
+        long start = System.nanoTime();
+        Result result = result(board);
+        SolverMetrics metrics = SolverMetrics.getInstance();
+        metrics.recordLatency(System.nanoTime() - start);
+        metrics.recordLookup(board.getIndex());
+        return result;
+    }
+
+    // returns the result of a board, the lookup is recorded by the caller
+    private static Result result(Board board) {
+        int index = board.getIndex();
+        return new Result(Solver.minimumMoves(index), Solver.packedMoves(index));
+    }
+
+    /**
+     * Returns the results of all boards in the same order.
+     *
+     * @param boards the given array of Board objects
+     * @return an array of Result in the same order of the boards
+     */
+    public Result[] solveAll(Board[] boards) {
+        long start = System.nanoTime();
+        Result[] results = new Result[boards.length];
+        pool.invoke(new SolveAction(boards, results, 0, boards.length));
+        SolverMetrics metrics = SolverMetrics.getInstance();
+        metrics.recordLatency(System.nanoTime() - start, boards.length);
+        int unsolvable = 0;
+        for (Result result : results) {
+            if (result.moves() == -1) {
+                unsolvable++;
+            }
+        }
+        metrics.recordLookups(boards.length, unsolvable);
+        return results;
+    }
+
+    /**
+     * Solve the stream of boards on all worker threads and deliver each result
+     * to the consumer.  If ordered, results are delivered in the order of the
+     * stream one at a time; otherwise results are delivered as soon as solved
+     * and the consumer may be called from several threads at once.
+     *
+     * @param boards the given stream of Board objects
+     * @param consumer the given consumer of the results
+     * @param ordered deliver the results in the order of the stream
+     */
+    public void solveAll(Stream<Board> boards, Consumer<Result> consumer, boolean ordered) {
+        pool.invoke(ForkJoinTask.adapt(() -> {
+            Stream<Result> results = boards.parallel().map(this::solve);
+            if (ordered) {
+                results.forEachOrdered(consumer);
+            } else {
+                results.forEach(consumer);
+            }
+        }));
+    }
+
+    /**
+     * Returns the number of worker threads.
+     *
+     * @return the number of worker threads
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Shut down the worker threads.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // solve a range of boards, split in half until below the threshold
+    private class SolveAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Board[] boards;
+        private final Result[] results;
+        private final int lo, hi;
+
+        SolveAction(Board[] boards, Result[] results, int lo, int hi) {
+            this.boards = boards;
+            this.results = results;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > THRESHOLD) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new SolveAction(boards, results, lo, mid),
+                        new SolveAction(boards, results, mid, hi));
+                return;
+            }
+            for (int i = lo; i < hi; i++) {
+                results[i] = result(boards[i]);
+            }
+        }
+    }
+
+    /**
+     *  test client to solve every board of 8puzzle in a batch.
+     *
+     *  @param args main function standard arguments
+     */
+    public static void main(String[] args) {
+        BatchSolver batchSolver = new BatchSolver();
+        PatternDatabase pd = new PatternDatabase();
+        Board[] boards = new Board[181440];
+        for (int i = 0; i < boards.length; i++) {
+            int[] combo = pd.idx2combo(i);
+            byte[] blocks = new byte[combo.length];
+            for (int j = 0; j < combo.length; j++) {
+                blocks[j] = (byte) combo[j];
+            }
+            boards[i] = new Board(blocks);
+        }
+
+        Stopwatch stopwatch = new Stopwatch();
+        Result[] results = batchSolver.solveAll(boards);
+        long total = 0;
+        for (Result result : results) {
+            total += result.moves();
+        }
+        System.out.println("Solved " + results.length + " boards with "
+                + batchSolver.getParallelism() + " threads : " + stopwatch.currentTime()
+                + "s\ttotal moves : " + total);
+        batchSolver.shutdown();
+    }
+}
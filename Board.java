@@ -1,5 +1,6 @@
 package mwong.myprojects.eightpuzzle;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 import mwong.myprojects.utilities.RandomizedQueue;
@@ -9,7 +10,7 @@ import mwong.myprojects.utilities.RandomizedQueue;
  *            www.linkedin.com/pub/macy-wong/46/550/37b/
  *
  *  Compilation: javac BoardPD8.java
- *  Dependencies : Direction.java, RandomizedQueue.java, PD8Combo.java
+ *  Dependencies : Direction.java, RandomizedQueue.java, PD8Combo.java, StorageMode.java
  *  
  *  A mutable data type for 8Puzzle board using pattern database
  *
@@ -19,7 +20,6 @@ public class Board {
     private static final byte N = 3;
     private static final int SIZE = 9;
     
-    private static PatternDatabase patterns;
     private boolean isSolvable;
     private int pdIdx, pdVal, zeroX, zeroY;
              
@@ -27,9 +27,7 @@ public class Board {
      * Initializes pd8Combo pattern database object if not exists.
      */
     public Board() {
-        if (patterns == null) {
-        	patterns = new PatternDatabase();
-        }
+        getPatterns();
     }
     
     /**
@@ -47,12 +45,65 @@ public class Board {
     
     // Initializes a board with pattern index with zero's positions
     private Board(int pdIdx, int zeroX, int zeroY) {
+        this.isSolvable = true;
         this.pdIdx = pdIdx;
-        this.pdVal = patterns.getPDvalue(pdIdx);
+        this.pdVal = getPatterns().getPDvalue(pdIdx);
         this.zeroX = zeroX;
         this.zeroY = zeroY;
     } 
     
+    /**
+     * Returns a board of the given pattern index, used to view a state
+     * of the solution on demand.
+     * 
+     * @param pdIdx the given index of the pattern
+     * @return a board of the given pattern index
+     */
+    protected static Board valueOf(int pdIdx) {
+        int zero = getPatterns().getZeroPosition(pdIdx);
+        return new Board(pdIdx, zero % N, zero / N);
+    }
+    
+    /**
+     * Returns the pattern database, initializes if not exists.
+     * 
+     * @return the pattern database shared by all boards
+     */
+    protected static PatternDatabase getPatterns() {
+        return PatternsHolder.PATTERNS;
+    }
+    
+    // the pattern database is created exactly once on first use, the class
+    // initialization publish it safely to all threads; -Dpd8.storage=SYMMETRY
+    // keeps the symmetry reduced tables only
+    private static class PatternsHolder {
+        private static final PatternDatabase PATTERNS = new PatternDatabase(LinkLayout.FLAT,
+                storageMode(System.getProperty("pd8.storage", "FULL")));
+    }
+
+    // returns the storage mode of the name in any case, FULL with a message
+    // if it is not a storage mode
+    private static StorageMode storageMode(String name) {
+        for (StorageMode mode : StorageMode.values()) {
+            if (mode.name().equalsIgnoreCase(name.trim())) {
+                return mode;
+            }
+        }
+        System.out.println("Pattern Database 8puzzle - pd8.storage " + name
+                + " is not one of " + Arrays.toString(StorageMode.values())
+                + ", use FULL");
+        return StorageMode.FULL;
+    }
+    
+    /**
+     * Returns the pattern index of the board; -1 if no solution.
+     * 
+     * @return pattern index of the board; -1 if no solution
+     */
+    protected int getIndex() {
+        return isSolvable ? pdIdx : -1;
+    }
+    
     /**
      * Returns the column number of the zero space.
      * 
@@ -84,11 +135,11 @@ public class Board {
             }
         }
         
-        pdIdx = patterns.getKeyIndex(tiles);
+        pdIdx = getPatterns().getKeyIndex(tiles);
         if (pdIdx == -1) {
             isSolvable = false;
         } else {
-            pdVal = patterns.getPDvalue(pdIdx);
+            pdVal = getPatterns().getPDvalue(pdIdx);
         }
     }
     
@@ -128,12 +179,17 @@ public class Board {
     }        
     
     /**
-     * Returns a board of move toward to the goal state.
+     * Returns a board of move toward to the goal state, the move is read from
+     * the best move table of pattern database.
      * 
      * @param direction the given Direction of previous move
      * @return board of move toward to the goal state
      */
     public Board solutionMove(Direction direction) {
+        Direction move = getPatterns().getBestMove(pdIdx);
+        if (move != Direction.NONE && move != direction.oppositeDirection()) {
+            return shift(move);
+        }
         Iterator<Board> it = this.neighbors(direction).iterator();
         Board bestMove = it.next();
         while (it.hasNext()) {
@@ -183,19 +239,19 @@ public class Board {
         switch (direction) {
         // RIGHT
         case RIGHT:   
-            nextIdx = patterns.getLink(pdIdx, direction);
+            nextIdx = getPatterns().getLink(pdIdx, direction);
             return new Board(nextIdx, zeroX + 1, zeroY);
         // DOWN
         case DOWN:
-            nextIdx = patterns.getLink(pdIdx, direction);
+            nextIdx = getPatterns().getLink(pdIdx, direction);
             return new Board(nextIdx, zeroX, zeroY + 1);
         // LEFT
         case LEFT:    
-            nextIdx = patterns.getLink(pdIdx, direction);
+            nextIdx = getPatterns().getLink(pdIdx, direction);
             return new Board(nextIdx, zeroX - 1, zeroY);
         // UP
         case UP:     
-            nextIdx = patterns.getLink(pdIdx, direction);
+            nextIdx = getPatterns().getLink(pdIdx, direction);
             return new Board(nextIdx, zeroX, zeroY - 1);
         default:    
             return null;
@@ -237,7 +293,7 @@ public class Board {
      */
     public String toString() {
         StringBuilder s = new StringBuilder();
-        int[] tiles = patterns.idx2combo(pdIdx);
+        int[] tiles = getPatterns().idx2combo(pdIdx);
         int idx = 0;
         for (int row = 0; row < N; row++) {
             for (int col = 0; col < N; col++) {
@@ -0,0 +1,348 @@
+package mwong.myprojects.fifteenpuzzle;
+
+import mwong.myprojects.eightpuzzle.Direction;
+import mwong.myprojects.utilities.StateSpace;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac BoardDimension.java
+ *  Dependencies: Direction.java, StateSpace.java
+ *
+ *  A immutable data type of the dimension of rows-by-columns slide puzzle
+ *  up to 12 cells, with the permutation rank of its solvable boards.  The
+ *  rank is the position of space * (tiles! / 2) + lehmer rank of the tiles
+ *  in reading order except the last 2, the order of the last 2 tiles is fixed
+ *  by the inversion parity of a solvable board.  The 3-by-3 ranks are the
+ *  same as the index of 8 puzzle pattern database.
+ *
+ ****************************************************************************/
+
+public final class BoardDimension {
+    /** 2-by-3 board, 360 states. */
+    public static final BoardDimension BOARD_2X3 = new BoardDimension(2, 3);
+    /** 2-by-4 board, 20,160 states. */
+    public static final BoardDimension BOARD_2X4 = new BoardDimension(2, 4);
+    /** 3-by-3 board, 181,440 states. */
+    public static final BoardDimension BOARD_3X3 = new BoardDimension(3, 3);
+    /** 3-by-4 board, 239,500,800 states. */
+    public static final BoardDimension BOARD_3X4 = new BoardDimension(3, 4);
+    private static final int MAX_CELLS = 12;
+    private static final Direction[] MOVES = {Direction.RIGHT, Direction.DOWN,
+        Direction.LEFT, Direction.UP};
+
+    private final int rows;
+    private final int cols;
+    private final int size;
+    // number of ranks of each position of space, tiles! / 2
+    private final int block;
+
+    /**
+     * Initializes the dimension of rows-by-columns board.
+     *
+     * @param rows the given number of rows
+     * @param cols the given number of columns
+     */
+    public BoardDimension(int rows, int cols) {
+        if (rows < 2 || cols < 2 || rows * cols > MAX_CELLS) {
+            throw new IllegalArgumentException("board of " + rows + "x" + cols
+                    + " is not supported");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.size = rows * cols;
+        int permutation = 1;
+        for (int i = 3; i < size; i++) {
+            permutation *= i;
+        }
+        this.block = permutation;
+    }
+
+    /**
+     * Returns the dimension of the given string, e.g. 3x4.
+     *
+     * @param dimension the given string of rows x columns
+     * @return the BoardDimension of the string
+     */
+    public static BoardDimension valueOf(String dimension) {
+        String[] parts = dimension.toLowerCase().split("x");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("dimension must be rows x columns : " + dimension);
+        }
+        return new BoardDimension(Integer.parseInt(parts[0].trim()),
+                Integer.parseInt(parts[1].trim()));
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return number of rows
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns.
+     *
+     * @return number of columns
+     */
+    public int cols() {
+        return cols;
+    }
+
+    /**
+     * Returns the number of cells.
+     *
+     * @return number of cells
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of solvable boards.
+     *
+     * @return number of solvable boards
+     */
+    public int states() {
+        return size * block;
+    }
+
+    /**
+     * Returns the rank of the goal board, tiles in order with the space last.
+     *
+     * @return rank of the goal board
+     */
+    public int goalRank() {
+        byte[] goal = new byte[size];
+        for (int i = 0; i < size - 1; i++) {
+            goal[i] = (byte) (i + 1);
+        }
+        return rank(goal);
+    }
+
+    // inversion parity of the tiles of a solvable board with space at the position,
+    // a vertical move shift a tile over columns - 1 tiles and change the row of space
+    private int parity(int zero) {
+        if (cols % 2 == 1) {
+            return 0;
+        }
+        return (rows - 1 - zero / cols) & 1;
+    }
+
+    /**
+     * Returns the rank of the board; -1 if no solution.
+     *
+     * @param tiles the given tiles from top row then left to right order
+     * @return rank of the board; -1 if no solution
+     */
+    public int rank(byte[] tiles) {
+        int zero = -1;
+        int used = 0;
+        int inversion = 0;
+        int rank = 0;
+        int count = 0;
+        for (int pos = 0; pos < size; pos++) {
+            int value = tiles[pos] - 1;
+            if (value == -1) {
+                zero = pos;
+                continue;
+            }
+            int lehmer = value - Integer.bitCount(used & ((1 << value) - 1));
+            used |= 1 << value;
+            inversion += lehmer;
+            if (count < size - 3) {
+                rank = rank * (size - 1 - count) + lehmer;
+            }
+            count++;
+        }
+        if ((inversion & 1) != parity(zero)) {
+            return -1;
+        }
+        return zero * block + rank;
+    }
+
+    /**
+     * Store the board of the rank in the given array.
+     *
+     * @param rank the given rank of the board
+     * @param tiles the given array of tiles from top row then left to right order
+     */
+    public void unrank(int rank, byte[] tiles) {
+        int zero = rank / block;
+        int perm = rank % block;
+        byte[] order = new byte[size - 1];
+        toTiles(zero, perm, order);
+        for (int pos = 0, i = 0; pos < size; pos++) {
+            tiles[pos] = (pos == zero) ? 0 : order[i++];
+        }
+    }
+
+    // store the tiles in reading order except the space of the lehmer rank,
+    // the lehmer digits are kept in the order array until replaced by tiles
+    private void toTiles(int zero, int perm, byte[] order) {
+        int count = size - 1;
+        int inversion = 0;
+        for (int i = count - 3; i >= 0; i--) {
+            order[i] = (byte) (perm % (count - i));
+            perm /= count - i;
+            inversion += order[i];
+        }
+        int used = 0;
+        for (int i = 0; i < count - 2; i++) {
+            int value = nthUnused(used, order[i]);
+            used |= 1 << value;
+            order[i] = (byte) (value + 1);
+        }
+        int first = nthUnused(used, 0);
+        int second = nthUnused(used, 1);
+        if ((inversion & 1) == parity(zero)) {
+            order[count - 2] = (byte) (first + 1);
+            order[count - 1] = (byte) (second + 1);
+        } else {
+            order[count - 2] = (byte) (second + 1);
+            order[count - 1] = (byte) (first + 1);
+        }
+    }
+
+    // returns the n-th smallest value not in used bits
+    private static int nthUnused(int used, int n) {
+        int unused = ~used;
+        while (n-- > 0) {
+            unused &= unused - 1;
+        }
+        return Integer.numberOfTrailingZeros(unused);
+    }
+
+    // returns the rank of the tiles in reading order except the space
+    private int rankOf(int zero, byte[] order) {
+        int used = 0;
+        int rank = 0;
+        for (int i = 0; i < size - 3; i++) {
+            int value = order[i] - 1;
+            rank = rank * (size - 1 - i) + value - Integer.bitCount(used & ((1 << value) - 1));
+            used |= 1 << value;
+        }
+        return zero * block + rank;
+    }
+
+    /**
+     * Returns the rank of the board after the space move in the direction;
+     * -1 if the move is not possible.
+     *
+     * @param rank the given rank of the board
+     * @param dir the given Direction of the space
+     * @return rank of the board after the move; -1 if not possible
+     */
+    public int move(int rank, Direction dir) {
+        int zero = rank / block;
+        switch (dir) {
+        // a horizontal move keep the order of tiles, only the space moves
+        case RIGHT:
+            return (zero % cols < cols - 1) ? rank + block : -1;
+        case LEFT:
+            return (zero % cols > 0) ? rank - block : -1;
+        case DOWN:
+        case UP:
+            byte[] order = new byte[size - 1];
+            toTiles(zero, rank % block, order);
+            return verticalMove(zero, order, new byte[size - 1], dir);
+        default:
+            return -1;
+        }
+    }
+
+    // returns the rank after a vertical move of the tiles in reading order,
+    // the tiles after the move are stored in the given next array
+    private int verticalMove(int zero, byte[] order, byte[] next, Direction dir) {
+        if (dir == Direction.DOWN) {
+            if (zero + cols >= size) {
+                return -1;
+            }
+            // the tile below moves up over columns - 1 tiles
+            System.arraycopy(order, 0, next, 0, order.length);
+            System.arraycopy(order, zero, next, zero + 1, cols - 1);
+            next[zero] = order[zero + cols - 1];
+            return rankOf(zero + cols, next);
+        }
+        if (zero - cols < 0) {
+            return -1;
+        }
+        // the tile above moves down over columns - 1 tiles
+        System.arraycopy(order, 0, next, 0, order.length);
+        System.arraycopy(order, zero - cols + 1, next, zero - cols, cols - 1);
+        next[zero - 1] = order[zero - cols];
+        return rankOf(zero - cols, next);
+    }
+
+    /**
+     * Store the rank of every possible board after a move of the space in the
+     * given array, in order of right, down, left and up; no allocation, the
+     * given scratch arrays are overwritten.
+     *
+     * @param rank the given rank of the board
+     * @param next the given array of at least 4 elements
+     * @param order the given scratch array of size - 1 elements
+     * @param moved the given scratch array of size - 1 elements
+     * @return the number of ranks stored
+     */
+    int neighbors(int rank, int[] next, byte[] order, byte[] moved) {
+        int zero = rank / block;
+        int count = 0;
+        if (zero % cols < cols - 1) {
+            next[count++] = rank + block;
+        }
+        // unrank once for both vertical moves
+        toTiles(zero, rank % block, order);
+        int down = verticalMove(zero, order, moved, Direction.DOWN);
+        if (down != -1) {
+            next[count++] = down;
+        }
+        if (zero % cols > 0) {
+            next[count++] = rank - block;
+        }
+        int up = verticalMove(zero, order, moved, Direction.UP);
+        if (up != -1) {
+            next[count++] = up;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the state space of the solvable boards, the moves are the
+     * direction of the space in order of right, down, left and up.
+     *
+     * @return the StateSpace of the solvable boards
+     */
+    public StateSpace stateSpace() {
+        return new StateSpace() {
+            public int size() {
+                return states();
+            }
+
+            public int degree() {
+                return MOVES.length;
+            }
+
+            public int neighbor(int state, int move) {
+                return move(state, MOVES[move]);
+            }
+
+            public int neighbors(int state, int[] next) {
+                return BoardDimension.this.neighbors(state, next, new byte[size - 1],
+                        new byte[size - 1]);
+            }
+        };
+    }
+
+    /**
+     * Returns a string representation of the dimension, e.g. 3x4.
+     *
+     * @return a string representation of the dimension
+     */
+    public String toString() {
+        return rows + "x" + cols;
+    }
+}
@@ -0,0 +1,357 @@
+package mwong.myprojects.eightpuzzle;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import mwong.myprojects.utilities.Stopwatch;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac BulkSolver.java
+ *  Execution:   java BulkSolver [-binary] [input [output]]
+ *  Dependencies: Solver.java, BatchRanker.java, SolverMetrics.java, Stopwatch.java
+ *
+ *  BulkSolver stream the boards from a file or stdin, solve them on multiple
+ *  cores a chunk at a time and write the results in input order to a file or
+ *  stdout.  The next chunk is read and solved while the previous chunk is
+ *  written, only 2 chunks are kept in memory whatever the input size.
+ *
+ *  text input  : one board per line, 9 digits of tiles from top row then
+ *                left to right, with or without spaces or commas between,
+ *                e.g. 123456780; empty lines are skipped
+ *  text output : one line per non-empty input line, moves and the moves
+ *                encoded as R, D, L, U; moves is -1 if no solution, invalid
+ *                if the line is not 9 digits or has any other character
+ *  binary input  : 9 bytes of tiles per board
+ *  binary output : 9 bytes per board, the number of moves (-1 if no solution,
+ *                  -2 if not a board) then the packed moves in a little
+ *                  endian long of 2 bits per move from the lowest bits
+ *
+ ****************************************************************************/
+
+public class BulkSolver {
+    private static final int SIZE = 9;
+    private static final int CHUNK_BOARDS = 1 << 16;
+    private static final int THRESHOLD = 1024;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final byte INVALID = -2;
+    private final ForkJoinPool pool;
+    private final BatchRanker ranker;
+    private final boolean binary;
+
+    // boards of a chunk and their results
+    private static final class Chunk {
+        private final byte[] tiles = new byte[CHUNK_BOARDS * SIZE];
+        private final int[] moves = new int[CHUNK_BOARDS];
+        private final long[] packedMoves = new long[CHUNK_BOARDS];
+        private int count;
+    }
+
+    /**
+     * Initializes BulkSolver of the given format using all processors.
+     *
+     * @param binary the given format, true for 9 bytes records, false for text lines
+     */
+    public BulkSolver(boolean binary) {
+        this(binary, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Initializes BulkSolver of the given format and parallelism level.
+     *
+     * @param binary the given format, true for 9 bytes records, false for text lines
+     * @param parallelism the given number of worker threads
+     */
+    public BulkSolver(boolean binary, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        // load the pattern database before any worker thread use it
+        ranker = new BatchRanker();
+        this.binary = binary;
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Solve every board of the input and write the results to the output
+     * in input order.
+     *
+     * @param in the given channel of input
+     * @param out the given stream of output
+     * @return number of boards solved
+     * @throws IOException if the input cannot be read or the output cannot be written
+     */
+    public long solve(ReadableByteChannel in, OutputStream out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.flip();
+        Chunk[] chunks = {new Chunk(), new Chunk()};
+        OutputStream writer = new BufferedOutputStream(out, BUFFER_SIZE);
+        ExecutorService writerThread = Executors.newSingleThreadExecutor();
+        // the write of each chunk, wait before reuse the chunk
+        CompletableFuture<?>[] writing = {CompletableFuture.completedFuture(null),
+            CompletableFuture.completedFuture(null)};
+        long total = 0;
+
+        try {
+            for (int turn = 0; ; turn ^= 1) {
+                Chunk chunk = chunks[turn];
+                writing[turn].join();
+                boolean more = binary ? readBinary(in, buffer, chunk)
+                        : readText(in, buffer, chunk);
+                if (chunk.count > 0) {
+                    long start = System.nanoTime();
+                    pool.invoke(new SolveAction(ranker, chunk, 0, chunk.count));
+                    SolverMetrics.getInstance().recordLatency(System.nanoTime() - start,
+                            chunk.count);
+                    total += chunk.count;
+                    writing[turn] = CompletableFuture.runAsync(() -> write(chunk, writer),
+                            writerThread);
+                }
+                if (!more) {
+                    break;
+                }
+            }
+            writing[0].join();
+            writing[1].join();
+            writer.flush();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) ex.getCause()).getCause();
+            }
+            throw ex;
+        } finally {
+            writerThread.shutdown();
+        }
+        return total;
+    }
+
+    // fill the chunk with the text lines, a board per non-empty line, a chunk
+    // always ends at the end of a line; returns false at the end of input
+    private boolean readText(ReadableByteChannel in, ByteBuffer buffer, Chunk chunk)
+            throws IOException {
+        chunk.count = 0;
+        int length = 0;
+        int digits = 0;
+        boolean valid = true;
+        while (true) {
+            while (buffer.hasRemaining()) {
+                byte c = buffer.get();
+                if (c == '\n') {
+                    if (length > 0) {
+                        finishLine(chunk, valid && digits == SIZE);
+                        length = 0;
+                        digits = 0;
+                        valid = true;
+                        if (chunk.count == CHUNK_BOARDS) {
+                            return true;
+                        }
+                    }
+                } else if (c != '\r') {
+                    length++;
+                    if (c >= '0' && c <= '9') {
+                        if (digits < SIZE) {
+                            chunk.tiles[chunk.count * SIZE + digits] = (byte) (c - '0');
+                        }
+                        digits++;
+                    } else if (c != ' ' && c != '\t' && c != ',') {
+                        valid = false;
+                    }
+                }
+            }
+            buffer.clear();
+            int read = in.read(buffer);
+            buffer.flip();
+            if (read == -1) {
+                // last line without line feed
+                if (length > 0) {
+                    finishLine(chunk, valid && digits == SIZE);
+                }
+                return false;
+            }
+        }
+    }
+
+    // complete the board of a line, a line not a board is marked by an invalid tile
+    private static void finishLine(Chunk chunk, boolean board) {
+        if (!board) {
+            chunk.tiles[chunk.count * SIZE] = SIZE;
+        }
+        chunk.count++;
+    }
+
+    // fill the chunk with 9 bytes records; returns false at the end of input
+    private boolean readBinary(ReadableByteChannel in, ByteBuffer buffer, Chunk chunk)
+            throws IOException {
+        chunk.count = 0;
+        int limit = CHUNK_BOARDS * SIZE;
+        int pos = 0;
+        while (pos < limit) {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                int read = in.read(buffer);
+                buffer.flip();
+                if (read == -1) {
+                    if (pos % SIZE != 0) {
+                        throw new IOException("BulkSolver - truncated record at the end of input");
+                    }
+                    chunk.count = pos / SIZE;
+                    return false;
+                }
+            }
+            int length = Math.min(buffer.remaining(), limit - pos);
+            buffer.get(chunk.tiles, pos, length);
+            pos += length;
+        }
+        chunk.count = CHUNK_BOARDS;
+        return true;
+    }
+
+    // solve the boards lo to hi - 1 of the chunk, the ranks of a batch are
+    // computed in place of the moves
+    private static void solve(BatchRanker ranker, Chunk chunk, int lo, int hi) {
+        ranker.rank(chunk.tiles, lo, hi - lo, chunk.moves);
+        for (int board = lo; board < hi; board++) {
+            int index = chunk.moves[board];
+            if (index != INVALID) {
+                chunk.moves[board] = Solver.minimumMoves(index);
+                chunk.packedMoves[board] = Solver.packedMoves(index);
+            } else {
+                chunk.packedMoves[board] = 0;
+            }
+        }
+    }
+
+    // write the results of the chunk in order
+    private void write(Chunk chunk, OutputStream writer) {
+        try {
+            if (binary) {
+                ByteBuffer record = ByteBuffer.allocate(SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < chunk.count; i++) {
+                    record.clear();
+                    record.put((byte) chunk.moves[i]).putLong(chunk.packedMoves[i]);
+                    writer.write(record.array());
+                }
+                return;
+            }
+            byte[] line = new byte[48];
+            for (int i = 0; i < chunk.count; i++) {
+                int moves = chunk.moves[i];
+                int length = 0;
+                if (moves == INVALID) {
+                    for (char c : "invalid".toCharArray()) {
+                        line[length++] = (byte) c;
+                    }
+                } else {
+                    if (moves < 0) {
+                        line[length++] = '-';
+                        line[length++] = '1';
+                    } else {
+                        if (moves >= 10) {
+                            line[length++] = (byte) ('0' + moves / 10);
+                        }
+                        line[length++] = (byte) ('0' + moves % 10);
+                    }
+                    line[length++] = ' ';
+                    for (int step = 0; step < moves; step++) {
+                        line[length++] = (byte) "RDLU".charAt((int) (chunk.packedMoves[i]
+                                >>> (step * 2)) & 3);
+                    }
+                }
+                line[length++] = '\n';
+                writer.write(line, 0, length);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Shut down the worker threads.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // solve a range of boards of a chunk, split in half until below the threshold
+    private static class SolveAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final BatchRanker ranker;
+        private final Chunk chunk;
+        private final int lo, hi;
+
+        SolveAction(BatchRanker ranker, Chunk chunk, int lo, int hi) {
+            this.ranker = ranker;
+            this.chunk = chunk;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > THRESHOLD) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new SolveAction(ranker, chunk, lo, mid),
+                        new SolveAction(ranker, chunk, mid, hi));
+                return;
+            }
+            solve(ranker, chunk, lo, hi);
+        }
+    }
+
+    /**
+     *  solve the boards of input file (or stdin) and write the results to
+     *  output file (or stdout), "-" for stdin or stdout.
+     *
+     *  @param args [-binary] [input [output]]
+     *  @throws IOException if the input cannot be read or the output cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        int arg = 0;
+        boolean binary = false;
+        if (args.length > arg && "-binary".equals(args[arg])) {
+            binary = true;
+            arg++;
+        }
+        String input = (args.length > arg) ? args[arg++] : "-";
+        String output = (args.length > arg) ? args[arg] : "-";
+
+        // messages go to stderr, stdout may be the output
+        PrintStream stdout = System.out;
+        System.setOut(System.err);
+        BulkSolver bulkSolver = new BulkSolver(binary);
+        Stopwatch stopwatch = new Stopwatch();
+        long total;
+        try (ReadableByteChannel in = "-".equals(input) ? Channels.newChannel(System.in)
+                : FileChannel.open(Paths.get(input), StandardOpenOption.READ);
+                OutputStream out = "-".equals(output) ? stdout
+                : Files.newOutputStream(Paths.get(output))) {
+            total = bulkSolver.solve(in, out);
+        } finally {
+            bulkSolver.shutdown();
+        }
+        double time = stopwatch.currentTime();
+        System.err.println("BulkSolver - solved " + total + " boards : " + time + "s\t"
+                + String.format("%.0f", total / Math.max(time, 0.001) * 60) + " boards/min");
+    }
+}
@@ -0,0 +1,463 @@
+package mwong.myprojects.utilities;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation:  javac CheckpointFile.java
+ *  Execution:    java CheckpointFile
+ *
+ * A data type of checkpoint file of a long running generation.  The content
+ * is written in a temporary file with a CRC32 checksum at the end, forced to
+ * the disk, then renamed to the checkpoint file and the directory is forced
+ * to the disk; a crash leaves either the previous checkpoint or the new one,
+ * never a partial file.  The checksum of the whole file is verified before
+ * any value is read.  Values are little endian, read back in the same order
+ * as written.
+ *
+ ****************************************************************************/
+
+public class CheckpointFile {
+    private static final int MAGIC = 0x434B5054;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private final Path path;
+
+    /**
+     * The content of a checkpoint written to the file.
+     */
+    public interface Writer {
+        /**
+         * Write the content of the checkpoint.
+         *
+         * @param out the given Output of the checkpoint
+         * @throws IOException if the checkpoint cannot be written
+         */
+        void write(Output out) throws IOException;
+    }
+
+    /**
+     * The content of a checkpoint read from the file.
+     */
+    public interface Reader {
+        /**
+         * Read the content of the checkpoint in the order written.
+         *
+         * @param in the given Input of the checkpoint
+         * @throws IOException if the checkpoint cannot be read
+         */
+        void read(Input in) throws IOException;
+    }
+
+    /**
+     * Initializes the checkpoint file of the given path.
+     *
+     * @param path the given path of the checkpoint file
+     */
+    public CheckpointFile(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Returns the path of the checkpoint file.
+     *
+     * @return the Path of the checkpoint file
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns true if the checkpoint file exists.
+     *
+     * @return true if the checkpoint file exists, false otherwise
+     */
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * Delete the checkpoint file and its temporary file if exists.
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    public void delete() throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(tempFile());
+    }
+
+    private Path tempFile() {
+        return path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    /**
+     * Write a new checkpoint in place of the previous one atomically.
+     *
+     * @param writer the given Writer of the content
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public void write(Writer writer) throws IOException {
+        Path temp = tempFile();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Output out = new Output(channel);
+            out.putInt(MAGIC);
+            writer.write(out);
+            out.finish();
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        // force the rename to the disk, a directory cannot be opened on some
+        // platforms and the rename is left to the file system
+        try (FileChannel directory = FileChannel.open(path.toAbsolutePath().getParent(),
+                StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException ex) {
+            // not supported on this platform
+        }
+    }
+
+    /**
+     * Read the checkpoint; returns false if the file is missing or the content
+     * does not match the checksum, the reader is not called if the checksum
+     * of the file does not match; the values read must be discarded if false.
+     *
+     * @param reader the given Reader of the content
+     * @return true if the checkpoint is read, false otherwise
+     * @throws IOException if the file cannot be read
+     */
+    public boolean read(Reader reader) throws IOException {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (!verify(channel)) {
+                return false;
+            }
+            channel.position(0);
+            Input in = new Input(channel);
+            if (in.getInt() != MAGIC) {
+                return false;
+            }
+            reader.read(in);
+            return in.finished();
+        } catch (EOFException ex) {
+            return false;
+        }
+    }
+
+    // returns true if the checksum at the end matches the content of the file
+    private static boolean verify(FileChannel channel) throws IOException {
+        long content = channel.size() - 8;
+        if (content < 4) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc = new CRC32();
+        long position = 0;
+        while (position < content) {
+            buffer.clear().limit((int) Math.min(BUFFER_SIZE, content - position));
+            int read = channel.read(buffer, position);
+            if (read == -1) {
+                return false;
+            }
+            buffer.flip();
+            crc.update(buffer);
+            position += read;
+        }
+        buffer.clear().limit(8);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, content + buffer.position()) == -1) {
+                return false;
+            }
+        }
+        return buffer.flip().getLong() == crc.getValue();
+    }
+
+    /**
+     * The output stream of a checkpoint.
+     */
+    public static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32 crc = new CRC32();
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        // write the checksum of the content, not included in the checksum
+        private void finish() throws IOException {
+            flush();
+            buffer.putLong(crc.getValue()).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        /**
+         * Write an integer.
+         *
+         * @param value the given integer
+         * @throws IOException if the checkpoint cannot be written
+         */
+        public void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        /**
+         * Write a long.
+         *
+         * @param value the given long
+         * @throws IOException if the checkpoint cannot be written
+         */
+        public void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        /**
+         * Write the bytes of the array from index from to to - 1.
+         *
+         * @param array the given byte array
+         * @param from the given first index
+         * @param to the given index after the last
+         * @throws IOException if the checkpoint cannot be written
+         */
+        public void put(byte[] array, int from, int to) throws IOException {
+            while (from < to) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), to - from);
+                buffer.put(array, from, length);
+                from += length;
+            }
+        }
+
+        /**
+         * Write the integers of the array from index from to to - 1.
+         *
+         * @param array the given integer array
+         * @param from the given first index
+         * @param to the given index after the last
+         * @throws IOException if the checkpoint cannot be written
+         */
+        public void put(int[] array, int from, int to) throws IOException {
+            while (from < to) {
+                ensure(4);
+                int length = Math.min(buffer.remaining() / 4, to - from);
+                buffer.asIntBuffer().put(array, from, length);
+                buffer.position(buffer.position() + length * 4);
+                from += length;
+            }
+        }
+
+        /**
+         * Write the longs of the array from index from to to - 1.
+         *
+         * @param array the given long array
+         * @param from the given first index
+         * @param to the given index after the last
+         * @throws IOException if the checkpoint cannot be written
+         */
+        public void put(long[] array, int from, int to) throws IOException {
+            while (from < to) {
+                ensure(8);
+                int length = Math.min(buffer.remaining() / 8, to - from);
+                buffer.asLongBuffer().put(array, from, length);
+                buffer.position(buffer.position() + length * 8);
+                from += length;
+            }
+        }
+    }
+
+    /**
+     * The input stream of a checkpoint.
+     */
+    public static final class Input {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        private Input(FileChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        // fill the buffer until the given number of bytes are available
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) == -1) {
+                    throw new EOFException("CheckpointFile - truncated checkpoint");
+                }
+            }
+            buffer.flip();
+        }
+
+        // returns true if all the content is read, only the checksum is left
+        private boolean finished() throws IOException {
+            ensure(8);
+            return buffer.remaining() == 8 && channel.position() == channel.size();
+        }
+
+        /**
+         * Read an integer.
+         *
+         * @return the integer read
+         * @throws IOException if the checkpoint cannot be read
+         */
+        public int getInt() throws IOException {
+            ensure(4);
+            return buffer.getInt();
+        }
+
+        /**
+         * Read a long.
+         *
+         * @return the long read
+         * @throws IOException if the checkpoint cannot be read
+         */
+        public long getLong() throws IOException {
+            ensure(8);
+            return buffer.getLong();
+        }
+
+        /**
+         * Read the bytes to the array from index from to to - 1.
+         *
+         * @param array the given byte array
+         * @param from the given first index
+         * @param to the given index after the last
+         * @throws IOException if the checkpoint cannot be read
+         */
+        public void get(byte[] array, int from, int to) throws IOException {
+            while (from < to) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), to - from);
+                buffer.get(array, from, length);
+                from += length;
+            }
+        }
+
+        /**
+         * Read the integers to the array from index from to to - 1.
+         *
+         * @param array the given integer array
+         * @param from the given first index
+         * @param to the given index after the last
+         * @throws IOException if the checkpoint cannot be read
+         */
+        public void get(int[] array, int from, int to) throws IOException {
+            while (from < to) {
+                ensure(4);
+                int start = buffer.position();
+                int length = Math.min(buffer.remaining() / 4, to - from);
+                buffer.asIntBuffer().get(array, from, length);
+                buffer.position(start + length * 4);
+                from += length;
+            }
+        }
+
+        /**
+         * Read the longs to the array from index from to to - 1.
+         *
+         * @param array the given long array
+         * @param from the given first index
+         * @param to the given index after the last
+         * @throws IOException if the checkpoint cannot be read
+         */
+        public void get(long[] array, int from, int to) throws IOException {
+            while (from < to) {
+                ensure(8);
+                int start = buffer.position();
+                int length = Math.min(buffer.remaining() / 8, to - from);
+                buffer.asLongBuffer().get(array, from, length);
+                buffer.position(start + length * 8);
+                from += length;
+            }
+        }
+    }
+
+    /**
+     * Unit tests the <tt>CheckpointFile</tt> data type, write and read back a
+     * checkpoint, then a corrupted checkpoint is rejected before it is read.
+     *
+     * @param args main function standard arguments
+     * @throws IOException if the checkpoint cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        CheckpointFile checkpoint = new CheckpointFile(Files.createTempFile("checkpoint", ".bin"));
+        long[] visited = new long[300000];
+        byte[] values = new byte[1500000];
+        for (int i = 0; i < visited.length; i++) {
+            visited[i] = i * 0x9E3779B97F4A7C15L;
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (byte) (i % 31);
+        }
+        checkpoint.write(out -> {
+            out.putInt(17);
+            out.put(values, 0, values.length);
+            out.put(visited, 0, visited.length);
+        });
+
+        int[] depth = new int[1];
+        long[] visitedIn = new long[visited.length];
+        byte[] valuesIn = new byte[values.length];
+        boolean read = checkpoint.read(in -> {
+            depth[0] = in.getInt();
+            in.get(valuesIn, 0, valuesIn.length);
+            in.get(visitedIn, 0, visitedIn.length);
+        });
+        boolean same = read && depth[0] == 17 && Arrays.equals(values, valuesIn)
+                && Arrays.equals(visited, visitedIn);
+        System.out.println("CheckpointFile - read back " + (same ? "identical" : "differs"));
+
+        try (FileChannel channel = FileChannel.open(checkpoint.getPath(),
+                StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {1}), 1000);
+        }
+        boolean[] called = new boolean[1];
+        read = checkpoint.read(in -> {
+            called[0] = true;
+            in.getInt();
+            in.get(valuesIn, 0, valuesIn.length);
+            in.get(visitedIn, 0, visitedIn.length);
+        });
+        System.out.println("CheckpointFile - corrupted checkpoint " + (read ? "accepted"
+                : "rejected") + ", reader " + (called[0] ? "called" : "not called"));
+        checkpoint.delete();
+    }
+}
@@ -0,0 +1,143 @@
+package mwong.myprojects.eightpuzzle;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import mwong.myprojects.utilities.Stopwatch;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac DepthSampler.java
+ *  Execution:   java DepthSampler [depth] [count]
+ *  Dependencies: PatternDatabase.java, Board.java, Stopwatch.java
+ *
+ *  DepthSampler returns uniformly random boards of the exact minimum number
+ *  of moves in constant time, or stream all boards of the given moves.  It
+ *  picks from the index of patterns ordered by depth in pattern database.
+ *
+ ****************************************************************************/
+
+public class DepthSampler {
+    private final PatternDatabase patterns;
+    private final Random random;
+
+    /**
+     * Initializes DepthSampler of the shared pattern database with thread
+     * local random numbers.
+     */
+    public DepthSampler() {
+        this(null);
+    }
+
+    /**
+     * Initializes DepthSampler of the shared pattern database with the given
+     * random number generator, samples are repeatable with a seeded Random.
+     *
+     * @param random the given Random, null for thread local random numbers
+     */
+    public DepthSampler(Random random) {
+        this.patterns = Board.getPatterns();
+        this.random = random;
+    }
+
+    /**
+     * Returns the largest minimum number of moves of all boards.
+     *
+     * @return the largest minimum number of moves of all boards
+     */
+    public int getMaxDepth() {
+        return patterns.getMaxDepth();
+    }
+
+    /**
+     * Returns the number of boards of the given minimum number of moves.
+     *
+     * @param depth the given minimum number of moves
+     * @return number of boards of the given minimum number of moves
+     */
+    public int count(int depth) {
+        return patterns.getDepthCount(depth);
+    }
+
+    /**
+     * Returns the pattern index of a uniformly random board of the given
+     * minimum number of moves.
+     *
+     * @param depth the given minimum number of moves
+     * @return the pattern index of a random board of the given depth
+     */
+    public int sampleIndex(int depth) {
+        int count = count(depth);
+        if (count == 0) {
+            throw new IllegalArgumentException("no board of " + depth + " moves");
+        }
+        int n = (random == null) ? ThreadLocalRandom.current().nextInt(count)
+                : random.nextInt(count);
+        return patterns.getIndexAtDepth(depth, n);
+    }
+
+    /**
+     * Returns a uniformly random board of the given minimum number of moves.
+     *
+     * @param depth the given minimum number of moves
+     * @return a random Board of the given depth
+     */
+    public Board sample(int depth) {
+        return Board.valueOf(sampleIndex(depth));
+    }
+
+    /**
+     * Returns the pattern index of all boards of the given minimum number of
+     * moves in order of index, the canonical patterns first in SYMMETRY storage.
+     *
+     * @param depth the given minimum number of moves
+     * @return an IntStream of pattern index of all boards of the given depth
+     */
+    public IntStream indices(int depth) {
+        return IntStream.range(0, count(depth)).map(n -> patterns.getIndexAtDepth(depth, n));
+    }
+
+    /**
+     * Returns all boards of the given minimum number of moves in order of index,
+     * the canonical patterns first in SYMMETRY storage.
+     *
+     * @param depth the given minimum number of moves
+     * @return a Stream of all boards of the given depth
+     */
+    public Stream<Board> boards(int depth) {
+        return indices(depth).mapToObj(Board::valueOf);
+    }
+
+    /**
+     *  test client print the number of boards of each depth and sample boards
+     *  of the given depth.
+     *
+     *  @param args [depth] [count], 24 and 100000 by default
+     */
+    public static void main(String[] args) {
+        int depth = (args.length > 0) ? Integer.parseInt(args[0]) : 24;
+        int count = (args.length > 1) ? Integer.parseInt(args[1]) : 100000;
+        DepthSampler sampler = new DepthSampler();
+        for (int d = 0; d <= sampler.getMaxDepth(); d++) {
+            System.out.println("moves : " + d + "\tcount : " + sampler.count(d));
+        }
+
+        Stopwatch stopwatch = new Stopwatch();
+        for (int i = 0; i < count; i++) {
+            int index = sampler.sampleIndex(depth);
+            if (Solver.minimumMoves(index) != depth) {
+                System.out.println("sampled board of wrong depth " + index);
+                return;
+            }
+        }
+        System.out.println("sampled " + count + " boards of " + depth + " moves : "
+                + stopwatch.currentTime() + "s");
+        System.out.println(sampler.sample(depth));
+        System.out.println("streamed " + sampler.boards(depth).filter(board -> board.isSolvable())
+                .count() + " boards of " + depth + " moves");
+    }
+}
@@ -0,0 +1,550 @@
+package mwong.myprojects.fifteenpuzzle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import mwong.myprojects.eightpuzzle.Direction;
+import mwong.myprojects.utilities.ExternalBreadthFirstSearch;
+import mwong.myprojects.utilities.ParallelBreadthFirstSearch;
+import mwong.myprojects.utilities.StateSpace;
+import mwong.myprojects.utilities.Stopwatch;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac DimensionPatternDatabase.java
+ *  Execution:   java DimensionPatternDatabase [-compact] [rows x columns] [heap budget in MB]
+ *  Dependencies: BoardDimension.java, Direction.java, ParallelBreadthFirstSearch.java,
+ *                ExternalBreadthFirstSearch.java, StateSpace.java, Stopwatch.java
+ *
+ *  A immutable data type of the full pattern database of rows-by-columns
+ *  slide puzzle, the minimum number of moves of every solvable board by its
+ *  rank.  If the generation fits in the heap budget, it is a breadth first
+ *  search in memory; otherwise the frontiers are spilled to disk in chunks
+ *  of ranks and the pattern values are written to the data file directly.
+ *  The data file is loaded by memory mapped file.
+ *
+ *  In compact mode, only the minimum number of moves mod 3 is kept, 2 bits
+ *  per board.  A move always changes the number of moves by 1, the next
+ *  board closer to goal is the neighbor of residue - 1 mod 3, so the exact
+ *  number of moves is the length of the walk to goal.  An optional cache of
+ *  exact number of moves stops the walk at a board seen before.
+ *
+ ****************************************************************************/
+
+public class DimensionPatternDatabase {
+    private static final String DIRECTORY = "database";
+    private static final String SEPARATOR = System.getProperty("file.separator");
+    // data file header : magic, version, number of states, rows and columns,
+    // checksum followed by the pattern values
+    private static final int FILE_MAGIC = 0x50444E4D;
+    private static final int FILE_VERSION = 1;
+    private static final int COMPACT_KEY = 1 << 16;
+    private static final int HEADER_SIZE = 24;
+    private static final int CHUNK_SIZE = 1 << 20;
+    // bytes of heap per state of the search in memory : depth, visited bit
+    // and the frontiers
+    private static final int BYTES_PER_STATE = 10;
+    private static final long DEFAULT_BUDGET = 64L << 20;
+    // 4 residues per byte, 3 if not reached
+    private static final int UNREACHED = 3;
+    private static final int DEFAULT_CACHE = 1 << 16;
+    private static final Direction[] MOVES = {Direction.RIGHT, Direction.DOWN,
+        Direction.LEFT, Direction.UP};
+
+    private final BoardDimension dimension;
+    private final StateSpace space;
+    // scratch arrays of the walk to goal of each thread in compact mode
+    private final ThreadLocal<Walk> walks;
+    private final int goal;
+    private final boolean compact;
+    // pattern values, or residues of 4 boards per byte in compact mode
+    private final ByteBuffer patternValue;
+    // direct mapped cache of exact number of moves in compact mode, each entry
+    // is (index / cache size) << 8 | moves, plus 1 to tell from empty entry
+    private final int[] depthCache;
+    private int[] layerCounts;
+
+    // the neighbors of a board and the tiles of the vertical moves
+    private static final class Walk {
+        private final int[] next = new int[MOVES.length];
+        private final byte[] order;
+        private final byte[] moved;
+
+        Walk(int size) {
+            order = new byte[size - 1];
+            moved = new byte[size - 1];
+        }
+    }
+
+    /**
+     * Initializes the pattern database of the board dimension with 64MB of heap
+     * budget for generation.
+     *
+     * @param dimension the given BoardDimension
+     */
+    public DimensionPatternDatabase(BoardDimension dimension) {
+        this(dimension, DEFAULT_BUDGET);
+    }
+
+    /**
+     * Initializes the pattern database of the board dimension with the given
+     * heap budget for generation.
+     *
+     * @param dimension the given BoardDimension
+     * @param heapBudget the given number of bytes of heap the generation may use
+     */
+    public DimensionPatternDatabase(BoardDimension dimension, long heapBudget) {
+        this(dimension, heapBudget, false, 0);
+    }
+
+    /**
+     * Initializes the pattern database of the board dimension with the given
+     * heap budget for generation.  In compact mode, it keeps 2 bits per board
+     * with the given number of entries of exact number of moves cache.
+     *
+     * @param dimension the given BoardDimension
+     * @param heapBudget the given number of bytes of heap the generation may use
+     * @param compact the given mode, true for 2 bits per board
+     * @param cacheSize the given number of entries of cache in compact mode,
+     *        a power of 2 or 0 for no cache
+     */
+    public DimensionPatternDatabase(BoardDimension dimension, long heapBudget, boolean compact,
+            int cacheSize) {
+        if (cacheSize < 0 || Integer.bitCount(cacheSize) > 1
+                || (cacheSize > 0 && (!compact || cacheSize < 16))) {
+            throw new IllegalArgumentException("cache size must be 0, or a power of 2 "
+                    + "at least 16 in compact mode : " + cacheSize);
+        }
+        this.dimension = dimension;
+        this.space = dimension.stateSpace();
+        this.walks = ThreadLocal.withInitial(() -> new Walk(dimension.size()));
+        this.goal = dimension.goalRank();
+        this.compact = compact;
+        this.depthCache = (cacheSize > 0) ? new int[cacheSize] : null;
+        String filepath = DIRECTORY + SEPARATOR + "pd_" + dimension
+                + (compact ? "_mod3" : "") + ".db";
+
+        // if database file exists, load from file
+        // otherwise re-generate and save in file, an interrupted generation by
+        // the external search resumes from the last complete layer
+        ByteBuffer table;
+        try {
+            Stopwatch stopwatch = new Stopwatch();
+            table = loadFile(filepath);
+            System.out.println("Pattern Database " + dimension
+                    + " - load from data file successed : " + stopwatch.currentTime() + "s");
+        } catch (Exception ex) {
+            (new File(filepath)).delete();
+            try {
+                Stopwatch stopwatch = new Stopwatch();
+                genPattern(filepath, heapBudget);
+                System.out.println("Pattern Database " + dimension
+                        + " - generate data set completed : " + stopwatch.currentTime() + "s");
+                table = loadFile(filepath);
+            } catch (IOException ex2) {
+                (new File(filepath)).delete();
+                throw new IllegalStateException("Pattern Database " + dimension
+                        + " - generation failed", ex2);
+            }
+        }
+        patternValue = table;
+    }
+
+    // returns the number of bytes of the table
+    private int tableSize() {
+        return compact ? (dimension.states() + 3) / 4 : dimension.states();
+    }
+
+    // load the pattern values from file, the table is used in place
+    // of the read only memory mapped file
+    private ByteBuffer loadFile(String filepath) throws IOException {
+        int size = tableSize();
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath),
+                StandardOpenOption.READ)) {
+            if (channel.size() != HEADER_SIZE + (long) size) {
+                throw new IOException("Pattern Database " + dimension
+                        + " - invalid data file size");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE + (long) size);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != FILE_MAGIC || buffer.getInt(4) != FILE_VERSION
+                || buffer.getInt(8) != dimension.states() || buffer.getInt(12) != dimensionKey()) {
+            throw new IOException("Pattern Database " + dimension + " - invalid data file header");
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer data = buffer.duplicate();
+        for (long pos = HEADER_SIZE; pos < HEADER_SIZE + (long) size; pos += CHUNK_SIZE) {
+            data.limit((int) Math.min(pos + CHUNK_SIZE, HEADER_SIZE + (long) size))
+                    .position((int) pos);
+            crc.update(data);
+        }
+        if (buffer.getLong(16) != crc.getValue()) {
+            throw new IOException("Pattern Database " + dimension
+                    + " - data file checksum mismatch");
+        }
+        return buffer.slice(HEADER_SIZE, size);
+    }
+
+    private int dimensionKey() {
+        return (dimension.rows() << 8) | dimension.cols() | (compact ? COMPACT_KEY : 0);
+    }
+
+    // generate the pattern values in a temporary file, in memory if it fits
+    // the heap budget, otherwise by the external breadth first search, then
+    // write the header and rename to the data file; in compact mode the pattern
+    // values are generated in a work file then packed in 2 bits per board.
+    // The temporary files are kept until the data file is renamed, the
+    // external search resumes with them
+    private void genPattern(String filepath, long heapBudget) throws IOException {
+        if (!(new File(DIRECTORY)).exists()) {
+            (new File(DIRECTORY)).mkdir();
+        }
+        int size = tableSize();
+        Path temp = Paths.get(filepath + ".tmp");
+        Path values = Paths.get(filepath + ".values");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (compact) {
+                try (FileChannel valueChannel = FileChannel.open(values,
+                        StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE)) {
+                    genValues(filepath, heapBudget, valueChannel, 0);
+                    packResidues(valueChannel, channel);
+                }
+            } else {
+                genValues(filepath, heapBudget, channel, HEADER_SIZE);
+            }
+
+            CRC32 crc = new CRC32();
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+            for (long pos = HEADER_SIZE; pos < HEADER_SIZE + (long) size; pos += CHUNK_SIZE) {
+                chunk.clear().limit((int) Math.min(CHUNK_SIZE, HEADER_SIZE + (long) size - pos));
+                while (chunk.hasRemaining()) {
+                    if (channel.read(chunk, pos + chunk.position()) == -1) {
+                        throw new IOException("Pattern Database " + dimension
+                                + " - generated data truncated");
+                    }
+                }
+                chunk.flip();
+                crc.update(chunk);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(dimension.states())
+                    .putInt(dimensionKey());
+            header.putLong(crc.getValue());
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(false);
+        }
+        Files.move(temp, Paths.get(filepath), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(values);
+        ExternalBreadthFirstSearch.delete(Paths.get(filepath + ".work"));
+    }
+
+    // write the pattern values to the channel starting at the given offset,
+    // in memory if it fits the heap budget, otherwise by the external search
+    private void genValues(String filepath, long heapBudget, FileChannel channel, long offset)
+            throws IOException {
+        if ((long) dimension.states() * BYTES_PER_STATE <= heapBudget) {
+            ParallelBreadthFirstSearch search = new ParallelBreadthFirstSearch(space);
+            ByteBuffer table = ByteBuffer.wrap(search.search(goal));
+            while (table.hasRemaining()) {
+                channel.write(table, offset + table.position());
+            }
+            layerCounts = search.getLayerCounts();
+        } else {
+            ExternalBreadthFirstSearch search = new ExternalBreadthFirstSearch(
+                    space, Paths.get(filepath + ".work"), heapBudget);
+            search.setLayerListener(depth -> System.out.println("Pattern Database "
+                    + dimension + " - external search depth " + depth));
+            search.search(goal, channel, offset);
+            layerCounts = search.getLayerCounts();
+        }
+    }
+
+    // stream the pattern values and write the residues mod 3 after the header,
+    // 4 boards per byte from the lowest bits
+    private void packResidues(FileChannel values, FileChannel channel) throws IOException {
+        int states = dimension.states();
+        ByteBuffer in = ByteBuffer.allocate(CHUNK_SIZE);
+        ByteBuffer out = ByteBuffer.allocate(CHUNK_SIZE / 4);
+        for (long pos = 0; pos < states; pos += CHUNK_SIZE) {
+            in.clear().limit((int) Math.min(CHUNK_SIZE, states - pos));
+            while (in.hasRemaining()) {
+                if (values.read(in, pos + in.position()) == -1) {
+                    throw new IOException("Pattern Database " + dimension
+                            + " - generated data truncated");
+                }
+            }
+            in.flip();
+            out.clear();
+            while (in.hasRemaining()) {
+                int packed = 0;
+                for (int i = 0; i < 4; i++) {
+                    int residue = UNREACHED;
+                    if (in.hasRemaining()) {
+                        byte value = in.get();
+                        residue = (value < 0) ? UNREACHED : value % 3;
+                    }
+                    packed |= residue << (i * 2);
+                }
+                out.put((byte) packed);
+            }
+            out.flip();
+            long position = HEADER_SIZE + pos / 4;
+            while (out.hasRemaining()) {
+                channel.write(out, position + out.position());
+            }
+        }
+    }
+
+    /**
+     *  Returns true if the pattern database keeps 2 bits per board.
+     *
+     *  @return true if the pattern database keeps 2 bits per board
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     *  Returns the number of bytes of the table of pattern values.
+     *
+     *  @return number of bytes of the table of pattern values
+     */
+    public int getTableSize() {
+        return patternValue.capacity();
+    }
+
+    /**
+     *  Returns the board dimension.
+     *
+     *  @return the BoardDimension of the pattern database
+     */
+    public BoardDimension getDimension() {
+        return dimension;
+    }
+
+    /**
+     *  Returns the index of the board.
+     *
+     *  @param tiles the given tiles from top row then left to right order
+     *  @return index of the board, -1 if no solution
+     */
+    public int getKeyIndex(byte[] tiles) {
+        return dimension.rank(tiles);
+    }
+
+    /**
+     *  Returns the minimum number of moves of the index.
+     *
+     *  @param index the given index of the board
+     *  @return minimum number of moves of the index
+     */
+    public int getPDvalue(int index) {
+        if (!compact) {
+            return patternValue.get(index);
+        }
+        Walk walk = walks.get();
+        int moves = 0;
+        int state = index;
+        int residue = getResidue(state);
+        if (residue == UNREACHED) {
+            return -1;
+        }
+        while (state != goal) {
+            int cached = cachedMoves(state);
+            if (cached != -1) {
+                moves += cached;
+                break;
+            }
+            state = closer(state, residue, walk);
+            residue = (residue + 2) % 3;
+            moves++;
+        }
+        cacheMoves(index, moves);
+        return moves;
+    }
+
+    /**
+     *  Returns the minimum number of moves of the index mod 3,
+     *  3 if the board cannot be reached.
+     *
+     *  @param index the given index of the board
+     *  @return minimum number of moves of the index mod 3
+     */
+    public int getResidue(int index) {
+        if (!compact) {
+            int value = patternValue.get(index);
+            return (value < 0) ? UNREACHED : value % 3;
+        }
+        return (patternValue.get(index >>> 2) >>> ((index & 3) * 2)) & 3;
+    }
+
+    // returns the neighbor of the state one move closer to goal
+    private int closer(int state, int residue, Walk walk) {
+        int target = (residue + 2) % 3;
+        int count = dimension.neighbors(state, walk.next, walk.order, walk.moved);
+        for (int i = 0; i < count; i++) {
+            if (getResidue(walk.next[i]) == target) {
+                return walk.next[i];
+            }
+        }
+        throw new IllegalStateException("Pattern Database " + dimension
+                + " - no neighbor closer to goal of " + state);
+    }
+
+    // returns the cached number of moves of the index, -1 if not cached
+    private int cachedMoves(int index) {
+        if (depthCache == null) {
+            return -1;
+        }
+        int entry = depthCache[index & (depthCache.length - 1)] - 1;
+        if (entry == -1 || entry >>> 8 != index / depthCache.length) {
+            return -1;
+        }
+        return entry & 0xFF;
+    }
+
+    // store the number of moves of the index in the cache, a single int write
+    // so a concurrent reader see either the old or the new entry
+    private void cacheMoves(int index, int moves) {
+        if (depthCache != null) {
+            depthCache[index & (depthCache.length - 1)] =
+                    ((index / depthCache.length) << 8 | moves) + 1;
+        }
+    }
+
+    /**
+     *  Returns the index of board after the move.
+     *
+     *  @param index the given index of the board
+     *  @param dir the given direction of the space
+     *  @return index of board after the move, -1 if not possible
+     */
+    public int getLink(int index, Direction dir) {
+        return dimension.move(index, dir);
+    }
+
+    /**
+     *  Returns the number of boards of each depth of the last generation,
+     *  null if loaded from the data file.
+     *
+     *  @return an integer array of number of boards of each depth
+     */
+    public int[] getLayerCounts() {
+        return (layerCounts == null) ? null : layerCounts.clone();
+    }
+
+    /**
+     *  Returns the direction of each move of the space to the goal state,
+     *  null if no solution.
+     *
+     *  @param tiles the given tiles from top row then left to right order
+     *  @return a byte array of the value of direction of each move
+     */
+    public byte[] solve(byte[] tiles) {
+        int index = getKeyIndex(tiles);
+        if (index == -1) {
+            return null;
+        }
+        int residue = getResidue(index);
+        if (residue == UNREACHED) {
+            return null;
+        }
+        // follow the neighbor of residue - 1 mod 3 until the goal
+        byte[] moves = new byte[Byte.MAX_VALUE];
+        int step = 0;
+        while (index != goal) {
+            int target = (residue + 2) % 3;
+            int from = index;
+            for (Direction dir : MOVES) {
+                int next = getLink(index, dir);
+                if (next != -1 && getResidue(next) == target) {
+                    moves[step++] = (byte) dir.getValue();
+                    index = next;
+                    residue = target;
+                    break;
+                }
+            }
+            if (index == from) {
+                throw new IllegalStateException("Pattern Database " + dimension
+                        + " - no neighbor closer to goal of " + from);
+            }
+        }
+        return Arrays.copyOf(moves, step);
+    }
+
+    /**
+     *  test client generate or load the pattern database of the board dimension
+     *  and print the number of boards of each depth.
+     *
+     *  @param args [-compact] [rows x columns] [heap budget in MB], 2x3, 2x4 and 3x3
+     *         by default
+     */
+    public static void main(String[] args) {
+        int arg = 0;
+        boolean compact = false;
+        if (args.length > arg && "-compact".equals(args[arg])) {
+            compact = true;
+            arg++;
+        }
+        BoardDimension[] dimensions = (args.length > arg)
+                ? new BoardDimension[] {BoardDimension.valueOf(args[arg])}
+                : new BoardDimension[] {BoardDimension.BOARD_2X3, BoardDimension.BOARD_2X4,
+                    BoardDimension.BOARD_3X3};
+        long budget = (args.length > arg + 1) ? Long.parseLong(args[arg + 1]) << 20
+                : DEFAULT_BUDGET;
+        for (BoardDimension dimension : dimensions) {
+            DimensionPatternDatabase pd = new DimensionPatternDatabase(dimension, budget,
+                    compact, compact ? DEFAULT_CACHE : 0);
+            Stopwatch stopwatch = new Stopwatch();
+            if (compact) {
+                // every board is a walk to goal, time a sample of random boards
+                Random random = new Random(0);
+                int samples = Math.min(dimension.states(), 100000);
+                long moves = 0;
+                for (int i = 0; i < samples; i++) {
+                    moves += pd.getPDvalue(random.nextInt(dimension.states()));
+                }
+                System.out.println(dimension + " : " + dimension.states() + " boards in "
+                        + pd.getTableSize() + " bytes, " + samples + " random boards average "
+                        + String.format("%.2f", (double) moves / samples) + " moves : "
+                        + stopwatch.currentTime() + "s");
+                if (pd.getLayerCounts() != null) {
+                    System.out.println(Arrays.toString(pd.getLayerCounts()));
+                }
+                continue;
+            }
+            int[] counts = new int[Byte.MAX_VALUE + 1];
+            int maxDepth = 0;
+            for (int index = 0; index < dimension.states(); index++) {
+                int value = pd.getPDvalue(index);
+                counts[value]++;
+                maxDepth = Math.max(maxDepth, value);
+            }
+            System.out.println(dimension + " : " + dimension.states() + " boards in "
+                    + pd.getTableSize() + " bytes, max moves " + maxDepth + " : "
+                    + stopwatch.currentTime() + "s\t"
+                    + Arrays.toString(Arrays.copyOf(counts, maxDepth + 1)));
+        }
+    }
+}
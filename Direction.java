@@ -20,6 +20,7 @@ package mwong.myprojects.eightpuzzle;
  */
 public enum Direction {
     RIGHT(0), DOWN(1), LEFT(2), UP(3), NONE(-1);
+    private static final Direction[] MOVES = {RIGHT, DOWN, LEFT, UP};
     private final int val;
     Direction(int val) { 
         this.val = val; 
@@ -34,6 +35,19 @@ public enum Direction {
         return val; 
     }
     
+    /**
+     *  Returns the direction of the given value.
+     *  
+     *  @param val the given value from 0 to 3, otherwise NONE
+     *  @return direction of the given value
+     */
+    public static Direction fromValue(int val) { 
+        if (val < 0 || val >= MOVES.length) {
+            return NONE;
+        }
+        return MOVES[val]; 
+    }
+    
     /**
      *  Returns the opposite direction of current direction.
      *  
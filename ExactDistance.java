@@ -0,0 +1,59 @@
+package mwong.myprojects.fifteenpuzzle;
+
+import mwong.myprojects.eightpuzzle.Direction;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac ExactDistance.java
+ *  Dependencies: DimensionPatternDatabase.java, Heuristic.java, Direction.java
+ *
+ *  A immutable data type of the exact minimum number of moves from the full
+ *  pattern database as a heuristic, e.g. 8 puzzle; a search with it only
+ *  expands the boards of the solution.  The 3x3 ranks and pattern values are
+ *  the same as 8 puzzle pattern database.
+ *
+ ****************************************************************************/
+
+public class ExactDistance implements Heuristic {
+    private final DimensionPatternDatabase pd;
+
+    /**
+     * Initializes the exact distance of the given full pattern database.
+     *
+     * @param pd the given DimensionPatternDatabase
+     */
+    public ExactDistance(DimensionPatternDatabase pd) {
+        this.pd = pd;
+    }
+
+    /**
+     * Returns the minimum number of moves of the tiles to the goal state.
+     *
+     * @param tiles a byte array of tiles
+     * @return the minimum number of moves to the goal state
+     */
+    public int estimate(byte[] tiles) {
+        return pd.getPDvalue(pd.getKeyIndex(tiles));
+    }
+
+    /**
+     * Returns the minimum number of moves after a tile moved.  A move always
+     * changes the minimum number of moves by 1, the number of moves mod 3 of
+     * the board after the move tells if it is 1 more or 1 less; the board is
+     * ranked again, but compact mode does not walk to goal.
+     *
+     * @param tiles a byte array of tiles after the move
+     * @param value the estimate before the move
+     * @param tile the moved tile
+     * @param from the position of the tile before the move
+     * @param to the position of the tile after the move
+     * @param dir the Direction of the space moved
+     * @return the minimum number of moves to the goal state after the move
+     */
+    public int update(byte[] tiles, int value, int tile, int from, int to, Direction dir) {
+        int residue = pd.getResidue(pd.getKeyIndex(tiles));
+        return (residue == (value + 1) % 3) ? value + 1 : value - 1;
+    }
+}
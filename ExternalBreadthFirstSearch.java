@@ -0,0 +1,385 @@
+package mwong.myprojects.utilities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation:  javac ExternalBreadthFirstSearch.java
+ *  Dependencies: StateSpace.java, CheckpointFile.java
+ *
+ * A data type of breadth first search over a ranked state space larger than
+ * the memory.  The rank space is split in chunks of consecutive ranks, the
+ * depth of every state is kept in a file.  Each layer is done in 2 passes:
+ * the frontier of every chunk is streamed from disk and the successors are
+ * appended to the file of the chunk they belong to, then every chunk loads
+ * its slice of depth, marks the new states and writes them in rank order as
+ * the frontier of the next layer.  Only a single chunk of depth, its bitmap
+ * and the file buffers are in memory.  After each layer the depth file is
+ * forced to the disk and a checkpoint of the layer counts is written, the
+ * frontier files are named by depth and the previous frontier is deleted
+ * after the checkpoint; a search interrupted at any time resumes from the
+ * last complete layer with the same depth file and work directory.
+ *
+ ****************************************************************************/
+
+public class ExternalBreadthFirstSearch {
+    private static final byte UNVISITED = -1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String CHECKPOINT = "checkpoint.bin";
+    private final StateSpace space;
+    private final Path directory;
+    private final CheckpointFile checkpoint;
+    private final int chunkSize;
+    private final int chunks;
+    private int[] layerCounts;
+    // the checkpoint is of the completed search
+    private boolean complete;
+    private IntConsumer layerListener = depth -> { };
+
+    /**
+     * Initializes the search of the state space with the work directory and
+     * the number of bytes of heap it may use.
+     *
+     * @param space the given StateSpace to search
+     * @param directory the given directory of the frontier files
+     * @param heapBudget the given number of bytes of heap it may use
+     */
+    public ExternalBreadthFirstSearch(StateSpace space, Path directory, long heapBudget) {
+        // a chunk use a byte of depth and a bit of new state per rank, half of the
+        // budget is left for the file buffers of every chunk and the state space
+        long chunk = Math.min(space.size(), heapBudget * 8 / 9 / 2);
+        if (chunk < BUFFER_SIZE) {
+            throw new IllegalArgumentException("heap budget too small : " + heapBudget);
+        }
+        this.space = space;
+        this.directory = directory;
+        this.checkpoint = new CheckpointFile(directory.resolve(CHECKPOINT));
+        // multiple of 64 to keep the bitmap aligned
+        this.chunkSize = (int) Math.min(space.size(), (chunk + 63) & ~63L);
+        this.chunks = (int) ((space.size() + (long) chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * Set the listener called with the depth after each layer is completed.
+     *
+     * @param layerListener the given listener of the depth of completed layer
+     */
+    public void setLayerListener(IntConsumer layerListener) {
+        this.layerListener = layerListener;
+    }
+
+    /**
+     * Returns the number of chunks of the rank space.
+     *
+     * @return number of chunks of the rank space
+     */
+    public int getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Write the depth of every state from the goal state to the file channel
+     * starting at the given offset, a byte per state in rank order, -1 if the
+     * state cannot be reached.  If the work directory has the checkpoint of
+     * the same search, it resumes from the last complete layer; the files of
+     * the work directory are kept until removed by delete.
+     *
+     * @param goal the given rank of the goal state
+     * @param output the given FileChannel of the depth
+     * @param offset the given position of the depth of rank 0
+     * @throws IOException if the files cannot be read or written
+     */
+    public void search(int goal, FileChannel output, long offset) throws IOException {
+        Files.createDirectories(directory);
+        byte[] depth = new byte[chunkSize];
+        long[] found = new long[(chunkSize + 63) >>> 6];
+        int[] counts = new int[Byte.MAX_VALUE + 1];
+        int layers = restore(goal, output, offset, counts);
+        if (complete) {
+            layerCounts = Arrays.copyOf(counts, layers);
+            return;
+        }
+        if (layers == 0) {
+            // remove the files left by another search
+            removeFiles(directory);
+            Arrays.fill(depth, UNVISITED);
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                writeDepth(output, offset, chunk, depth);
+            }
+            output.write(ByteBuffer.wrap(new byte[] {0}), offset + goal);
+            try (DataOutputStream out = openOutput(frontierFile(0, goal / chunkSize))) {
+                out.writeInt(goal);
+            }
+            counts[layers++] = 1;
+            save(goal, offset, counts, layers);
+        } else {
+            System.out.println("ExternalBreadthFirstSearch - resume after depth "
+                    + (layers - 1));
+            // remove the files of the interrupted layer
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                Files.deleteIfExists(successorFile(chunk));
+                Files.deleteIfExists(frontierFile(layers, chunk));
+            }
+            deleteFrontier(layers - 2);
+        }
+
+        byte moves = (byte) (layers - 1);
+        while (true) {
+            moves++;
+            expand(moves - 1);
+            int count = 0;
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                count += merge(chunk, moves, output, offset, depth, found);
+            }
+            output.force(false);
+            if (count == 0) {
+                complete = true;
+                save(goal, offset, counts, layers);
+                deleteFrontier(moves - 1);
+                break;
+            }
+            counts[layers++] = count;
+            save(goal, offset, counts, layers);
+            deleteFrontier(moves - 1);
+            layerListener.accept(moves);
+        }
+        layerCounts = Arrays.copyOf(counts, layers);
+    }
+
+    // returns the number of layers of the checkpoint of the same search with
+    // the counts of each layer, 0 if no such checkpoint
+    private int restore(int goal, FileChannel output, long offset, int[] counts)
+            throws IOException {
+        complete = false;
+        if (output.size() < offset + space.size()) {
+            return 0;
+        }
+        int[] layers = new int[1];
+        boolean[] done = new boolean[1];
+        boolean read = checkpoint.read(in -> {
+            if (in.getInt() != space.size() || in.getInt() != chunkSize
+                    || in.getInt() != goal || in.getLong() != offset) {
+                return;
+            }
+            done[0] = in.getInt() == 1;
+            layers[0] = in.getInt();
+            if (layers[0] < 1 || layers[0] > counts.length) {
+                layers[0] = 0;
+                return;
+            }
+            in.get(counts, 0, layers[0]);
+        });
+        if (!read || layers[0] == 0) {
+            return 0;
+        }
+        complete = done[0];
+        return layers[0];
+    }
+
+    // write the checkpoint of the completed layers
+    private void save(int goal, long offset, int[] counts, int layers) throws IOException {
+        checkpoint.write(out -> {
+            out.putInt(space.size());
+            out.putInt(chunkSize);
+            out.putInt(goal);
+            out.putLong(offset);
+            out.putInt(complete ? 1 : 0);
+            out.putInt(layers);
+            out.put(counts, 0, layers);
+        });
+    }
+
+    /**
+     * Delete the files of the search in the work directory, the checkpoint
+     * and the frontier files, and the directory if empty.
+     *
+     * @param directory the given work directory of the search
+     * @throws IOException if the files cannot be deleted
+     */
+    public static void delete(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        removeFiles(directory);
+        new CheckpointFile(directory.resolve(CHECKPOINT)).delete();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            if (files.iterator().hasNext()) {
+                return;
+            }
+        }
+        Files.delete(directory);
+    }
+
+    // delete the frontier and successor files of the work directory
+    private static void removeFiles(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                "{frontier-,successor-}*.bin")) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    // delete the frontier files of the depth
+    private void deleteFrontier(int moves) throws IOException {
+        if (moves < 0) {
+            return;
+        }
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            Files.deleteIfExists(frontierFile(moves, chunk));
+        }
+    }
+
+    /**
+     * Returns the number of states in each layer of the last search.
+     *
+     * @return an integer array of number of states at each depth
+     */
+    public int[] getLayerCounts() {
+        return layerCounts.clone();
+    }
+
+    // stream the frontier of the depth of every chunk, append the successors
+    // to the file of the chunk they belong to
+    private void expand(int moves) throws IOException {
+        DataOutputStream[] successors = new DataOutputStream[chunks];
+        int[] next = new int[space.degree()];
+        try {
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                Path frontier = frontierFile(moves, chunk);
+                if (!Files.exists(frontier)) {
+                    continue;
+                }
+                try (DataInputStream in = openInput(frontier)) {
+                    while (true) {
+                        int state;
+                        try {
+                            state = in.readInt();
+                        } catch (EOFException ex) {
+                            break;
+                        }
+                        int count = space.neighbors(state, next);
+                        for (int i = 0; i < count; i++) {
+                            int target = next[i] / chunkSize;
+                            if (successors[target] == null) {
+                                successors[target] = openOutput(successorFile(target));
+                            }
+                            successors[target].writeInt(next[i]);
+                        }
+                    }
+                }
+            }
+        } finally {
+            for (DataOutputStream out : successors) {
+                if (out != null) {
+                    out.close();
+                }
+            }
+        }
+    }
+
+    // mark the successors not visited of the chunk, write them in rank order
+    // as the next frontier; returns the number of new states.  A state of the
+    // depth may be left by an interrupted run of the same layer, it is new
+    // unless found already
+    private int merge(int chunk, byte moves, FileChannel output, long offset, byte[] depth,
+            long[] found) throws IOException {
+        Path successors = successorFile(chunk);
+        if (!Files.exists(successors)) {
+            return 0;
+        }
+        int lo = chunk * chunkSize;
+        readDepth(output, offset, chunk, depth);
+        Arrays.fill(found, 0);
+        int count = 0;
+        try (DataInputStream in = openInput(successors)) {
+            while (true) {
+                int state;
+                try {
+                    state = in.readInt() - lo;
+                } catch (EOFException ex) {
+                    break;
+                }
+                if ((found[state >>> 6] & (1L << state)) == 0
+                        && (depth[state] == UNVISITED || depth[state] == moves)) {
+                    depth[state] = moves;
+                    found[state >>> 6] |= 1L << state;
+                    count++;
+                }
+            }
+        }
+        Files.delete(successors);
+        if (count == 0) {
+            return 0;
+        }
+        writeDepth(output, offset, chunk, depth);
+
+        try (DataOutputStream out = openOutput(frontierFile(moves, chunk))) {
+            for (int word = 0; word < found.length; word++) {
+                long bits = found[word];
+                while (bits != 0) {
+                    out.writeInt(lo + (word << 6) + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+        }
+        return count;
+    }
+
+    // returns the number of states of the chunk
+    private int chunkLength(int chunk) {
+        return (int) Math.min(chunkSize, space.size() - (long) chunk * chunkSize);
+    }
+
+    private void readDepth(FileChannel output, long offset, int chunk, byte[] depth)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(depth, 0, chunkLength(chunk));
+        long position = offset + (long) chunk * chunkSize;
+        while (buffer.hasRemaining()) {
+            if (output.read(buffer, position + buffer.position()) == -1) {
+                throw new EOFException("ExternalBreadthFirstSearch - depth file truncated");
+            }
+        }
+    }
+
+    private void writeDepth(FileChannel output, long offset, int chunk, byte[] depth)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(depth, 0, chunkLength(chunk));
+        long position = offset + (long) chunk * chunkSize;
+        while (buffer.hasRemaining()) {
+            output.write(buffer, position + buffer.position());
+        }
+    }
+
+    private Path frontierFile(int moves, int chunk) {
+        return directory.resolve("frontier-" + moves + "-" + chunk + ".bin");
+    }
+
+    private Path successorFile(int chunk) {
+        return directory.resolve("successor-" + chunk + ".bin");
+    }
+
+    private static DataInputStream openInput(Path path) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(path),
+                BUFFER_SIZE));
+    }
+
+    private static DataOutputStream openOutput(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path),
+                BUFFER_SIZE));
+    }
+}
@@ -0,0 +1,263 @@
+package mwong.myprojects.eightpuzzle;
+
+import mwong.myprojects.utilities.ParallelBreadthFirstSearch;
+import mwong.myprojects.utilities.StateSpace;
+import mwong.myprojects.utilities.Stopwatch;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac GoalPatternDatabase.java
+ *  Execution:   java GoalPatternDatabase
+ *  Dependencies: PatternDatabase.java, Direction.java, ParallelBreadthFirstSearch.java,
+ *                StateSpace.java, Stopwatch.java
+ *
+ *  A immutable data type of the minimum number of moves between any 2 boards
+ *  of 8puzzle.  A move only depends on the position of space, so relabel the
+ *  tiles of both boards that the target board becomes a goal board of tiles
+ *  in order, the distance is the same.  The goal board must have the space
+ *  at the same position of the target board; a reflection of both boards
+ *  moves the space of the target to a corner, an edge or the center first,
+ *  only 3 goal boards are needed : the space at bottom right is the full
+ *  pattern database, the space at bottom center and center are generated.
+ *
+ ****************************************************************************/
+
+public class GoalPatternDatabase {
+    private static final int SIZE = 9;
+    private static final int SIZE_COMBO = 181440;
+    private static final Direction[] DIRECTIONS = {Direction.RIGHT, Direction.DOWN,
+        Direction.LEFT, Direction.UP};
+    // the position of space of each goal board
+    private static final int[] GOAL_SPACE = {8, 7, 4};
+    // reflection of each position of space : 1 transpose, 2 flip rows, 4 flip columns
+    // applied in that order, and the goal board of the reflected position
+    private static final int TRANSPOSE = 1;
+    private static final int FLIP_ROWS = 2;
+    private static final int FLIP_COLS = 4;
+    private static final int[] REFLECTION = new int[SIZE];
+    private static final int[] GOAL_OF = new int[SIZE];
+
+    static {
+        for (int pos = 0; pos < SIZE; pos++) {
+            search:
+            for (int goal = 0; goal < GOAL_SPACE.length; goal++) {
+                for (int reflection = 0; reflection < 8; reflection++) {
+                    if (reflect(pos, reflection) == GOAL_SPACE[goal]) {
+                        REFLECTION[pos] = reflection;
+                        GOAL_OF[pos] = goal;
+                        break search;
+                    }
+                }
+            }
+        }
+    }
+
+    private final PatternDatabase patterns;
+    // pattern values of the goal boards other than the full pattern database
+    private final byte[][] goalValue;
+
+    /**
+     * Initializes the pattern values of the goal boards from the full pattern database.
+     *
+     * @param patterns the given full pattern database
+     */
+    public GoalPatternDatabase(PatternDatabase patterns) {
+        Stopwatch stopwatch = new Stopwatch();
+        this.patterns = patterns;
+        StateSpace space = new StateSpace() {
+            public int size() {
+                return SIZE_COMBO;
+            }
+
+            public int degree() {
+                return DIRECTIONS.length;
+            }
+
+            public int neighbor(int state, int move) {
+                return patterns.getLink(state, DIRECTIONS[move]);
+            }
+        };
+        goalValue = new byte[GOAL_SPACE.length][];
+        for (int goal = 1; goal < GOAL_SPACE.length; goal++) {
+            goalValue[goal] = new ParallelBreadthFirstSearch(space)
+                    .search(patterns.getKeyIndex(goalBoard(GOAL_SPACE[goal])));
+        }
+        System.out.println("Goal Pattern Database 8puzzle - " + (GOAL_SPACE.length - 1)
+                + " goal boards generated : " + stopwatch.currentTime() + "s");
+    }
+
+    // returns the goal board of tiles in order with space at the position
+    private static byte[] goalBoard(int space) {
+        byte[] goal = new byte[SIZE];
+        for (int pos = 0, tile = 1; pos < SIZE; pos++) {
+            if (pos != space) {
+                goal[pos] = (byte) tile++;
+            }
+        }
+        return goal;
+    }
+
+    // returns the position after the reflection
+    private static int reflect(int pos, int reflection) {
+        int row = pos / 3;
+        int col = pos % 3;
+        if ((reflection & TRANSPOSE) != 0) {
+            int temp = row;
+            row = col;
+            col = temp;
+        }
+        if ((reflection & FLIP_ROWS) != 0) {
+            row = 2 - row;
+        }
+        if ((reflection & FLIP_COLS) != 0) {
+            col = 2 - col;
+        }
+        return row * 3 + col;
+    }
+
+    // returns the direction of the reflected board back to the original board,
+    // undo the reflection in reverse order
+    private static Direction reflectBack(Direction dir, int reflection) {
+        if ((reflection & FLIP_COLS) != 0
+                && (dir == Direction.LEFT || dir == Direction.RIGHT)) {
+            dir = dir.oppositeDirection();
+        }
+        if ((reflection & FLIP_ROWS) != 0 && (dir == Direction.UP || dir == Direction.DOWN)) {
+            dir = dir.oppositeDirection();
+        }
+        if ((reflection & TRANSPOSE) != 0) {
+            dir = dir.symmetryDirection();
+        }
+        return dir;
+    }
+
+    // returns the position of space, throws IllegalArgumentException if the
+    // tiles are not 0 to 8 each appears once
+    private static int spaceOf(byte[] tiles) {
+        if (tiles.length != SIZE) {
+            throw new IllegalArgumentException("expected 9 tiles");
+        }
+        int used = 0;
+        int space = -1;
+        for (int pos = 0; pos < SIZE; pos++) {
+            int tile = tiles[pos];
+            if (tile < 0 || tile >= SIZE || (used & (1 << tile)) != 0) {
+                throw new IllegalArgumentException("tiles must be 0 to 8 each once");
+            }
+            used |= 1 << tile;
+            if (tile == 0) {
+                space = pos;
+            }
+        }
+        return space;
+    }
+
+    // returns the index of the start board relabeled and reflected that the
+    // target board becomes the goal board of the reflected space, -1 if no solution
+    private int relabeledIndex(byte[] from, byte[] to, int reflection, int goal) {
+        byte[] label = new byte[SIZE];
+        byte[] goalTiles = goalBoard(GOAL_SPACE[goal]);
+        for (int pos = 0; pos < SIZE; pos++) {
+            label[to[pos]] = goalTiles[reflect(pos, reflection)];
+        }
+        byte[] combo = new byte[SIZE];
+        for (int pos = 0; pos < SIZE; pos++) {
+            combo[reflect(pos, reflection)] = label[from[pos]];
+        }
+        return patterns.getKeyIndex(combo);
+    }
+
+    // returns the pattern value of the index of the goal board
+    private int getPDvalue(int index, int goal) {
+        if (goal == 0) {
+            return patterns.getPDvalue(index);
+        }
+        return goalValue[goal][index];
+    }
+
+    /**
+     *  Returns the minimum number of moves from a board to the other board;
+     *  -1 if no solution.
+     *
+     *  @param from the given tiles of start board from top row then left to right order
+     *  @param to the given tiles of target board from top row then left to right order
+     *  @return minimum number of moves from a board to the other board, -1 if no solution
+     */
+    public int distance(byte[] from, byte[] to) {
+        spaceOf(from);
+        int space = spaceOf(to);
+        int index = relabeledIndex(from, to, REFLECTION[space], GOAL_OF[space]);
+        if (index == -1) {
+            return -1;
+        }
+        return getPDvalue(index, GOAL_OF[space]);
+    }
+
+    /**
+     *  Returns the direction of each move of the space from a board to the
+     *  other board, null if no solution.
+     *
+     *  @param from the given tiles of start board from top row then left to right order
+     *  @param to the given tiles of target board from top row then left to right order
+     *  @return an array of Direction of each move, null if no solution
+     */
+    public Direction[] solve(byte[] from, byte[] to) {
+        spaceOf(from);
+        int space = spaceOf(to);
+        int reflection = REFLECTION[space];
+        int goal = GOAL_OF[space];
+        int index = relabeledIndex(from, to, reflection, goal);
+        if (index == -1) {
+            return null;
+        }
+        int value = getPDvalue(index, goal);
+        Direction[] moves = new Direction[value];
+        for (int step = 0; step < moves.length; step++) {
+            for (Direction dir : DIRECTIONS) {
+                int next = patterns.getLink(index, dir);
+                if (next != -1 && getPDvalue(next, goal) < value) {
+                    moves[step] = reflectBack(dir, reflection);
+                    index = next;
+                    value--;
+                    break;
+                }
+            }
+        }
+        return moves;
+    }
+
+    /**
+     *  Returns the number of bytes of the tables of the generated goal boards.
+     *
+     *  @return number of bytes of the tables of the generated goal boards
+     */
+    protected long getTableSize() {
+        return (GOAL_SPACE.length - 1L) * SIZE_COMBO;
+    }
+
+    /**
+     *  test client print the solution from a board to the goal board of each
+     *  position of space.
+     *
+     *  @param args main function standard arguments
+     */
+    public static void main(String[] args) {
+        GoalPatternDatabase gpd = new GoalPatternDatabase(new PatternDatabase());
+        byte[] from = {8, 6, 7, 2, 5, 4, 3, 0, 1};
+        for (int space = 0; space < SIZE; space++) {
+            byte[] to = goalBoard(space);
+            Direction[] moves = gpd.solve(from, to);
+            StringBuilder s = new StringBuilder();
+            if (moves != null) {
+                for (Direction dir : moves) {
+                    s.append("RDLU".charAt(dir.getValue()));
+                }
+            }
+            System.out.println("to space at " + space + " : " + gpd.distance(from, to)
+                    + " moves\t" + s);
+        }
+        System.out.println("goal tables : " + gpd.getTableSize() + " bytes");
+    }
+}
@@ -0,0 +1,43 @@
+package mwong.myprojects.fifteenpuzzle;
+
+import mwong.myprojects.eightpuzzle.Direction;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac Heuristic.java
+ *  Dependencies: Direction.java
+ *
+ *  An interface of admissible heuristic of slide puzzle, the estimate never
+ *  exceed the minimum number of moves to the goal state.  The board is the
+ *  tiles from top row then left to right order, 0 is the space.
+ *
+ ****************************************************************************/
+
+public interface Heuristic {
+    /**
+     * Returns the estimate of number of moves of the tiles to the goal state.
+     * 
+     * @param tiles a byte array of tiles
+     * @return the estimate of number of moves to the goal state
+     */
+    int estimate(byte[] tiles);
+    
+    /**
+     * Returns the estimate after a tile moved into the space, from the
+     * estimate before the move where it can.  A heuristic keeps no state of
+     * the search, it is shared by the worker threads; an implementation that
+     * cannot derive the estimate from the estimate before the move and the
+     * move may evaluate the board again, in whole or in part.
+     * 
+     * @param tiles a byte array of tiles after the move
+     * @param value the estimate before the move
+     * @param tile the moved tile
+     * @param from the position of the tile before the move (the new space)
+     * @param to the position of the tile after the move (the old space)
+     * @param dir the Direction of the space moved
+     * @return the estimate of number of moves to the goal state after the move
+     */
+    int update(byte[] tiles, int value, int tile, int from, int to, Direction dir);
+}
@@ -0,0 +1,160 @@
+package mwong.myprojects.fifteenpuzzle;
+
+import java.util.Random;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac HeuristicComparison.java
+ *  Execution:   java HeuristicComparison [3x3 boards] [4x4 boards]
+ *  Dependencies: IdaStarSolver.java, Heuristic.java, ManhattanDistance.java,
+ *                LinearConflict.java, WalkingDistance.java, ExactDistance.java,
+ *                DimensionPatternDatabase.java, AdditivePatternDatabase.java
+ *
+ *  HeuristicComparison solve a fixed seeded corpus of boards with each
+ *  heuristic by a single thread IdaStarSolver, and reports the number of
+ *  nodes expanded and the time per node.  Every heuristic must find the
+ *  same number of moves of each board.  The time includes the setup of each
+ *  solve, it dominates the time per node of a few nodes per board.  The time
+ *  per node is the cost of the update of each heuristic as implemented:
+ *  walking distance counts the pattern of the moved direction again, exact
+ *  distance ranks the board again.
+ *
+ *  3x3 corpus : random solvable boards
+ *  4x4 corpus : random walks of 60 moves from the goal state
+ *
+ ****************************************************************************/
+
+public class HeuristicComparison {
+    private static final long SEED = 20160101L;
+    private static final int WALK = 60;
+
+    // returns the random solvable n-by-n boards
+    private static byte[][] randomBoards(int n, int count, Random random) {
+        byte[][] boards = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            byte[] tiles = new byte[n * n];
+            for (int j = 0; j < tiles.length; j++) {
+                int k = random.nextInt(j + 1);
+                tiles[j] = tiles[k];
+                tiles[k] = (byte) j;
+            }
+            if (!IdaStarSolver.isSolvable(tiles)) {
+                // swap 2 tiles to change the inversion parity
+                int a = (tiles[0] == 0) ? 2 : 0;
+                int b = (tiles[1] == 0) ? 2 : 1;
+                byte temp = tiles[a];
+                tiles[a] = tiles[b];
+                tiles[b] = temp;
+            }
+            boards[i] = tiles;
+        }
+        return boards;
+    }
+
+    // returns the n-by-n boards of random walks from the goal state
+    private static byte[][] randomWalks(int n, int count, Random random) {
+        byte[][] boards = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            byte[] tiles = new byte[n * n];
+            for (int j = 0; j < tiles.length - 1; j++) {
+                tiles[j] = (byte) (j + 1);
+            }
+            int zero = tiles.length - 1;
+            int last = -1;
+            for (int step = 0; step < WALK; step++) {
+                int next;
+                do {
+                    switch (random.nextInt(4)) {
+                    case 0:
+                        next = (zero % n < n - 1) ? zero + 1 : -1;
+                        break;
+                    case 1:
+                        next = (zero < tiles.length - n) ? zero + n : -1;
+                        break;
+                    case 2:
+                        next = (zero % n > 0) ? zero - 1 : -1;
+                        break;
+                    default:
+                        next = (zero >= n) ? zero - n : -1;
+                        break;
+                    }
+                } while (next == -1 || next == last);
+                tiles[zero] = tiles[next];
+                tiles[next] = 0;
+                last = zero;
+                zero = next;
+            }
+            boards[i] = tiles;
+        }
+        return boards;
+    }
+
+    // solve the boards with each heuristic and print the statistics
+    private static void compare(String title, byte[][] boards, String[] names,
+            Heuristic[] heuristics) {
+        System.out.println(title + " : " + boards.length + " boards");
+        System.out.println(String.format("%-28s%10s%16s%12s%12s%10s", "heuristic", "moves",
+                "expanded", "per board", "time (s)", "ns/node"));
+        int[] expected = null;
+        for (int h = 0; h < heuristics.length; h++) {
+            IdaStarSolver solver = new IdaStarSolver(heuristics[h], 1);
+            // warm up pass before the measured pass
+            for (byte[] board : boards) {
+                solver.solve(board);
+            }
+            int[] moves = new int[boards.length];
+            long totalMoves = 0;
+            long expanded = 0;
+            double time = 0;
+            for (int i = 0; i < boards.length; i++) {
+                IdaStarSolver.Result result = solver.solve(boards[i]);
+                moves[i] = result.moves();
+                totalMoves += result.moves();
+                expanded += result.expandedNodes();
+                time += result.time();
+            }
+            if (expected == null) {
+                expected = moves;
+            }
+            for (int i = 0; i < boards.length; i++) {
+                if (moves[i] != expected[i]) {
+                    throw new IllegalStateException(names[h] + " - board " + i + " solved in "
+                            + moves[i] + " moves, expected " + expected[i]);
+                }
+            }
+            System.out.println(String.format("%-28s%10d%16d%12.0f%12.3f%10.1f", names[h],
+                    totalMoves, expanded, (double) expanded / boards.length, time,
+                    time * 1e9 / Math.max(expanded, 1)));
+            solver.shutdown();
+        }
+        System.out.println();
+    }
+
+    /**
+     *  test client compare the heuristics on 3x3 and 4x4 corpus.
+     *
+     *  @param args [3x3 boards] [4x4 boards], 1000 and 20 by default
+     */
+    public static void main(String[] args) {
+        int count3 = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+        int count4 = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        Random random = new Random(SEED);
+
+        byte[][] boards3 = randomBoards(3, count3, random);
+        compare("3x3 random boards", boards3,
+                new String[] {"Manhattan", "Manhattan + linear conflict", "Walking distance",
+                    "Exact pattern database"},
+                new Heuristic[] {new ManhattanDistance(3), new LinearConflict(3),
+                    new WalkingDistance(3),
+                    new ExactDistance(new DimensionPatternDatabase(BoardDimension.BOARD_3X3))});
+
+        byte[][] boards4 = randomWalks(4, count4, random);
+        compare("4x4 random walks of " + WALK + " moves", boards4,
+                new String[] {"Manhattan", "Manhattan + linear conflict", "Walking distance",
+                    "Additive pattern database 663"},
+                new Heuristic[] {new ManhattanDistance(4), new LinearConflict(4),
+                    new WalkingDistance(4), new AdditivePatternDatabase(PatternPartition.PD663)});
+    }
+}
@@ -0,0 +1,411 @@
+package mwong.myprojects.fifteenpuzzle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import mwong.myprojects.eightpuzzle.Direction;
+import mwong.myprojects.utilities.Stopwatch;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac IdaStarSolver.java
+ *  Execution:   java IdaStarSolver
+ *  Dependencies: Heuristic.java, ManhattanDistance.java, AdditivePatternDatabase.java,
+ *                Direction.java, Stopwatch.java
+ *
+ *  IdaStarSolver is the iterative deepening A* solver of n-by-n slide puzzle
+ *  with an admissible heuristic.  It only keeps the path of the current
+ *  search in memory, as long as the threshold.  On each threshold, the
+ *  subtrees below the root are distributed to the worker threads of the
+ *  solver, created once and shared by all searches.
+ *
+ ****************************************************************************/
+
+public class IdaStarSolver {
+    private static final Direction[] MOVES = {Direction.RIGHT, Direction.DOWN,
+        Direction.LEFT, Direction.UP};
+    private static final int FOUND = -1;
+    private final Heuristic heuristic;
+    private final ForkJoinPool pool;
+    private final int splitDepth;
+
+    /**
+     * Result of a search, the minimum number of moves, the direction of each
+     * move and the statistics of the search.
+     */
+    public static final class Result {
+        private final int moves;
+        private final byte[] directions;
+        private final long expanded;
+        private final double time;
+
+        private Result(int moves, byte[] directions, long expanded, double time) {
+            this.moves = moves;
+            this.directions = directions;
+            this.expanded = expanded;
+            this.time = time;
+        }
+
+        /**
+         * Returns the minimum number of moves to solve the board; -1 if no solution.
+         *
+         * @return minimum number of moves to solve the board; -1 if no solution
+         */
+        public int moves() {
+            return moves;
+        }
+
+        /**
+         * Returns the direction of the space of the given move.
+         *
+         * @param step the given move from 0 to moves - 1
+         * @return direction of the space of the given move
+         */
+        public Direction getDirection(int step) {
+            if (step < 0 || step >= moves) {
+                throw new IndexOutOfBoundsException("step " + step);
+            }
+            return Direction.fromValue(directions[step]);
+        }
+
+        /**
+         * Returns the number of nodes expanded by all threshold iterations.
+         *
+         * @return number of nodes expanded
+         */
+        public long expandedNodes() {
+            return expanded;
+        }
+
+        /**
+         * Returns the time of the search in seconds.
+         *
+         * @return time of the search in seconds
+         */
+        public double time() {
+            return time;
+        }
+
+        /**
+         * Returns the number of nodes expanded per second.
+         *
+         * @return number of nodes expanded per second
+         */
+        public double nodesPerSecond() {
+            return expanded / Math.max(time, 0.001);
+        }
+
+        /**
+         * Returns a string representation of the result.
+         *
+         * @return a string representation of the result
+         */
+        public String toString() {
+            StringBuilder s = new StringBuilder();
+            s.append("moves : " + moves + "\texpanded : " + expanded + "\ttime : " + time
+                    + "s\tnodes/sec : " + String.format("%.0f", nodesPerSecond()) + "\n");
+            for (int i = 0; i < moves; i++) {
+                s.append("RDLU".charAt(directions[i]));
+            }
+            return s.toString();
+        }
+    }
+
+    /**
+     * Initializes IdaStarSolver with the heuristic using all processors.
+     *
+     * @param heuristic the given admissible Heuristic
+     */
+    public IdaStarSolver(Heuristic heuristic) {
+        this(heuristic, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Initializes IdaStarSolver with the heuristic and the given parallelism level.
+     *
+     * @param heuristic the given admissible Heuristic
+     * @param parallelism the given number of worker threads
+     */
+    public IdaStarSolver(Heuristic heuristic, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.heuristic = heuristic;
+        pool = new ForkJoinPool(parallelism);
+        // about 8 subtrees per thread, the branching factor is about 2
+        splitDepth = Math.max(2, 32 - Integer.numberOfLeadingZeros(parallelism * 8 - 1));
+    }
+
+    /**
+     * Returns the boolean represent the n-by-n board is solvable.
+     *
+     * @param tiles a byte array of tiles
+     * @return boolean represent the board is solvable
+     */
+    public static boolean isSolvable(byte[] tiles) {
+        int n = (int) Math.round(Math.sqrt(tiles.length));
+        int inversion = 0;
+        int zeroRow = 0;
+        for (int i = 0; i < tiles.length; i++) {
+            if (tiles[i] == 0) {
+                zeroRow = i / n;
+                continue;
+            }
+            for (int j = i + 1; j < tiles.length; j++) {
+                if (tiles[j] != 0 && tiles[j] < tiles[i]) {
+                    inversion++;
+                }
+            }
+        }
+        // a vertical move changes the inversion by n - 1
+        if (n % 2 == 1) {
+            return inversion % 2 == 0;
+        }
+        return (inversion + zeroRow) % 2 == (n - 1) % 2;
+    }
+
+    /**
+     * Returns the Result of the n-by-n board, where tiles starts from top row
+     * then left to right order.
+     *
+     * @param blocks a byte array of tiles
+     * @return the Result of the board
+     */
+    public Result solve(byte[] blocks) {
+        Stopwatch stopwatch = new Stopwatch();
+        if (!isSolvable(blocks)) {
+            return new Result(-1, new byte[0], 0, stopwatch.currentTime());
+        }
+        byte[] tiles = blocks.clone();
+        int zero = 0;
+        while (tiles[zero] != 0) {
+            zero++;
+        }
+        int n = (int) Math.round(Math.sqrt(tiles.length));
+        int threshold = heuristic.estimate(tiles);
+        long expanded = 0;
+
+        try {
+            while (true) {
+                AtomicBoolean found = new AtomicBoolean();
+                AtomicReference<byte[]> solution = new AtomicReference<byte[]>();
+                // expand the root to the split depth, then search the subtrees
+                Worker root = new Worker(tiles, n, threshold, found, solution);
+                List<Worker> subtrees = new ArrayList<Worker>();
+                int next = root.split(zero, 0, heuristic.estimate(tiles), Direction.NONE,
+                        subtrees);
+                expanded += root.expanded;
+                if (next != FOUND && !subtrees.isEmpty()) {
+                    List<Future<Integer>> results = pool.invokeAll(subtrees);
+                    for (int i = 0; i < subtrees.size(); i++) {
+                        int value = results.get(i).get();
+                        expanded += subtrees.get(i).expanded;
+                        if (value != FOUND) {
+                            next = Math.min(next, value);
+                        }
+                    }
+                }
+                if (solution.get() != null) {
+                    byte[] path = solution.get();
+                    return new Result(path.length, path, expanded, stopwatch.currentTime());
+                }
+                threshold = next;
+            }
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Returns the number of worker threads.
+     *
+     * @return the number of worker threads
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Shut down the worker threads.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // a depth first search of a subtree with its own copy of the board, the
+    // path holds a move per depth up to the threshold
+    private class Worker implements Callable<Integer> {
+        private final byte[] tiles;
+        private final byte[] path;
+        private final int n;
+        private final int threshold;
+        private final AtomicBoolean found;
+        private final AtomicReference<byte[]> solution;
+        private int zero;
+        private int depth;
+        private int value;
+        private Direction last;
+        private long expanded;
+
+        Worker(byte[] tiles, int n, int threshold, AtomicBoolean found,
+                AtomicReference<byte[]> solution) {
+            this.tiles = tiles.clone();
+            this.path = new byte[threshold + 1];
+            this.n = n;
+            this.threshold = threshold;
+            this.found = found;
+            this.solution = solution;
+        }
+
+        // returns a worker start from the current node of this worker
+        private Worker copy(int zero, int depth, int value, Direction last) {
+            Worker worker = new Worker(tiles, n, threshold, found, solution);
+            System.arraycopy(path, 0, worker.path, 0, depth);
+            worker.zero = zero;
+            worker.depth = depth;
+            worker.value = value;
+            worker.last = last;
+            return worker;
+        }
+
+        public Integer call() {
+            return search(zero, depth, value, last);
+        }
+
+        // returns the position of space after the move, -1 if not possible
+        private int move(int zero, Direction dir) {
+            switch (dir) {
+            case RIGHT:
+                return (zero % n < n - 1) ? zero + 1 : -1;
+            case DOWN:
+                return (zero < tiles.length - n) ? zero + n : -1;
+            case LEFT:
+                return (zero % n > 0) ? zero - 1 : -1;
+            case UP:
+                return (zero >= n) ? zero - n : -1;
+            default:
+                return -1;
+            }
+        }
+
+        private boolean isGoal() {
+            for (int i = 0; i < tiles.length - 1; i++) {
+                if (tiles[i] != i + 1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // search to the split depth, collect the subtrees; returns FOUND or the
+        // minimum estimate exceeded the threshold
+        int split(int zero, int g, int h, Direction last, List<Worker> subtrees) {
+            int f = g + h;
+            if (f > threshold) {
+                return f;
+            }
+            if (h == 0 && isGoal()) {
+                found.set(true);
+                solution.set(Arrays.copyOf(path, g));
+                return FOUND;
+            }
+            if (g == splitDepth) {
+                subtrees.add(copy(zero, g, h, last));
+                return Integer.MAX_VALUE;
+            }
+            expanded++;
+            int min = Integer.MAX_VALUE;
+            for (Direction dir : MOVES) {
+                if (dir == last.oppositeDirection()) {
+                    continue;
+                }
+                int next = move(zero, dir);
+                if (next == -1) {
+                    continue;
+                }
+                byte tile = tiles[next];
+                tiles[zero] = tile;
+                tiles[next] = 0;
+                path[g] = (byte) dir.getValue();
+                int t = split(next, g + 1, heuristic.update(tiles, h, tile, next, zero, dir),
+                        dir, subtrees);
+                tiles[next] = tile;
+                tiles[zero] = 0;
+                if (t == FOUND) {
+                    return FOUND;
+                }
+                min = Math.min(min, t);
+            }
+            return min;
+        }
+
+        // returns FOUND or the minimum estimate exceeded the threshold
+        private int search(int zero, int g, int h, Direction last) {
+            int f = g + h;
+            if (f > threshold) {
+                return f;
+            }
+            if (h == 0 && isGoal()) {
+                if (found.compareAndSet(false, true)) {
+                    solution.set(Arrays.copyOf(path, g));
+                }
+                return FOUND;
+            }
+            if (found.get()) {
+                return Integer.MAX_VALUE;
+            }
+            expanded++;
+            int min = Integer.MAX_VALUE;
+            for (Direction dir : MOVES) {
+                if (dir == last.oppositeDirection()) {
+                    continue;
+                }
+                int next = move(zero, dir);
+                if (next == -1) {
+                    continue;
+                }
+                byte tile = tiles[next];
+                tiles[zero] = tile;
+                tiles[next] = 0;
+                path[g] = (byte) dir.getValue();
+                int t = search(next, g + 1, heuristic.update(tiles, h, tile, next, zero, dir),
+                        dir);
+                tiles[next] = tile;
+                tiles[zero] = 0;
+                if (t == FOUND) {
+                    return FOUND;
+                }
+                min = Math.min(min, t);
+            }
+            return min;
+        }
+    }
+
+    /**
+     *  test client to solve 15 puzzle boards with additive pattern database.
+     *
+     *  @param args main function standard arguments
+     */
+    public static void main(String[] args) {
+        IdaStarSolver solver = new IdaStarSolver(
+                new AdditivePatternDatabase(PatternPartition.PD663));
+        byte[][] boards = {
+            {8, 6, 4, 10, 3, 2, 12, 0, 5, 9, 1, 13, 11, 7, 15, 14},
+            {8, 10, 11, 4, 6, 5, 7, 13, 2, 1, 14, 15, 3, 0, 9, 12},
+            {6, 14, 0, 5, 11, 8, 15, 9, 7, 4, 1, 2, 3, 10, 12, 13},
+        };
+        for (byte[] board : boards) {
+            System.out.println(Arrays.toString(board));
+            System.out.println(solver.solve(board) + "\n");
+        }
+        solver.shutdown();
+    }
+}
@@ -0,0 +1,222 @@
+package mwong.myprojects.utilities;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation:  javac IntDeque.java
+ *  Execution:    java IntDeque
+ *
+ * A data type of dequeue of int values using a re-sizable circular array,
+ * the int counterpart of Deque without a node or a boxed value per item.
+ * The array only grows, once it reaches the working size adding and
+ * removing items does not allocate.
+ *
+ ****************************************************************************/
+
+public class IntDeque implements Iterable<Integer> {
+    private int[] a;
+    // position of the first item, the capacity is always a power of 2
+    private int head;
+    private int N;
+
+    /**
+     * Initializes an empty deque.
+     */
+    public IntDeque() {
+        this(8);
+    }
+
+    /**
+     * Initializes an empty deque with the given initial capacity.
+     *
+     * @param capacity the given number of items before the array grows
+     */
+    public IntDeque(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        a = new int[Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1)];
+    }
+
+    /**
+     * Return the empty status of the deque.
+     *
+     * @return true if deque is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return N == 0;
+    }
+
+    /**
+     * Return the number of items in this deque.
+     *
+     * @return an integer, the number of items in this deque.
+     */
+    public int size() {
+        return N;
+    }
+
+    // double the array, the items are moved to the start of the new array
+    private void grow() {
+        int[] temp = new int[a.length * 2];
+        int first = Math.min(N, a.length - head);
+        System.arraycopy(a, head, temp, 0, first);
+        System.arraycopy(a, 0, temp, first, N - first);
+        a = temp;
+        head = 0;
+    }
+
+    /**
+     * Adds the item at the front of the deque.
+     *
+     * @param item the item to add
+     */
+    public void addFirst(int item) {
+        if (N == a.length) {
+            grow();
+        }
+        head = (head - 1) & (a.length - 1);
+        a[head] = item;
+        N++;
+    }
+
+    /**
+     * Adds the item at the end of the deque.
+     *
+     * @param item the item to add
+     */
+    public void addLast(int item) {
+        if (N == a.length) {
+            grow();
+        }
+        a[(head + N) & (a.length - 1)] = item;
+        N++;
+    }
+
+    /**
+     * Removes and returns the first item on this deque.
+     *
+     * @return the first item on this deque
+     * @throws java.util.NoSuchElementException if this queue is empty
+     */
+    public int removeFirst() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        int item = a[head];
+        head = (head + 1) & (a.length - 1);
+        N--;
+        return item;
+    }
+
+    /**
+     * Removes and returns the last item on this deque.
+     *
+     * @return the last item on this deque
+     * @throws java.util.NoSuchElementException if this queue is empty
+     */
+    public int removeLast() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        N--;
+        return a[(head + N) & (a.length - 1)];
+    }
+
+    /**
+     * Returns the item at the given position from the front of the deque.
+     *
+     * @param index the given position from 0 to size - 1
+     * @return the item at the given position
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+    public int get(int index) {
+        if (index < 0 || index >= N) {
+            throw new IndexOutOfBoundsException("index " + index);
+        }
+        return a[(head + index) & (a.length - 1)];
+    }
+
+    /**
+     * Removes all items, the array is kept for reuse.
+     */
+    public void clear() {
+        head = 0;
+        N = 0;
+    }
+
+    /**
+     * Returns an iterator that iterates over the items in this queue in FIFO order.
+     *
+     * @return an iterator that iterates over the items in this queue in FIFO order
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new CircularArrayIterator();
+    }
+
+    // an iterator, doesn't implement remove() since it's optional
+    private class CircularArrayIterator implements PrimitiveIterator.OfInt {
+        private int n = N;
+        private int current = head;
+
+        public boolean hasNext() {
+            return n > 0;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int item = a[current];
+            current = (current + 1) & (a.length - 1);
+            n--;
+            return item;
+        }
+    }
+
+    /**
+     * Unit tests the <tt>IntDeque</tt> data type against <tt>Deque</tt>.
+     *
+     * @param args main function standard arguments
+     */
+    public static void main(String[] args) {
+        Random random = new Random(0);
+        IntDeque q = new IntDeque(1);
+        Deque<Integer> expected = new Deque<Integer>();
+        for (int i = 0; i < 1000000; i++) {
+            int option = random.nextInt(4);
+            if (option == 0) {
+                q.addFirst(i);
+                expected.addFirst(i);
+            } else if (option == 1) {
+                q.addLast(i);
+                expected.addLast(i);
+            } else if (!q.isEmpty()) {
+                int item = (option == 2) ? q.removeFirst() : q.removeLast();
+                int other = (option == 2) ? expected.removeFirst() : expected.removeLast();
+                if (item != other) {
+                    System.out.println("differs at " + i + " : " + item + " " + other);
+                    return;
+                }
+            }
+        }
+        Iterator<Integer> itr = expected.iterator();
+        for (int item : q) {
+            if (item != itr.next()) {
+                System.out.println("iteration differs");
+                return;
+            }
+        }
+        System.out.println("IntDeque - identical to Deque, " + q.size() + " items left");
+    }
+}
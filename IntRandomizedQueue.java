@@ -0,0 +1,180 @@
+package mwong.myprojects.utilities;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.random.RandomGenerator;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation:  javac IntRandomizedQueue.java
+ *  Execution:    java IntRandomizedQueue
+ *
+ * A data type of randomized queue of int values using a re-sizable array,
+ * the int counterpart of RandomizedQueue without a boxed value per item.
+ * The random generator is given, a seeded generator gives the same order
+ * on every run.  The array only grows, once it reaches the working size
+ * enqueue, dequeue and sample do not allocate.
+ *
+ ****************************************************************************/
+
+public class IntRandomizedQueue implements Iterable<Integer> {
+    private final RandomGenerator random;
+    private int[] a;
+    private int N;
+
+    /**
+     * Initializes an empty randomized queue and a random seed.
+     */
+    public IntRandomizedQueue() {
+        this(new Random());
+    }
+
+    /**
+     * Initializes an empty randomized queue with the given random generator.
+     *
+     * @param random the given RandomGenerator
+     */
+    public IntRandomizedQueue(RandomGenerator random) {
+        if (random == null) {
+            throw new NullPointerException();
+        }
+        this.random = random;
+        a = new int[8];
+    }
+
+    /**
+     * Is this queue empty?
+     *
+     * @return true if this queue is empty; false otherwise
+     */
+    public boolean isEmpty() {
+        return N == 0;
+    }
+
+    /**
+     * Returns the number of items in this queue.
+     *
+     * @return the number of items in this queue
+     */
+    public int size() {
+        return N;
+    }
+
+    /**
+     * Adds the item to this queue.
+     *
+     * @param item the item to add
+     */
+    public void enqueue(int item) {
+        if (N == a.length) {
+            int[] temp = new int[a.length * 2];
+            System.arraycopy(a, 0, temp, 0, N);
+            a = temp;
+        }
+        a[N++] = item;
+    }
+
+    /**
+     * Removes and returns the item on this queue randomly.
+     *
+     * @return the item on this queue randomly
+     * @throws java.util.NoSuchElementException if this queue is empty
+     */
+    public int dequeue() {
+        if (N == 0) {
+            throw new NoSuchElementException();
+        }
+        int r = random.nextInt(N);
+        int item = a[r];
+        a[r] = a[--N];
+        return item;
+    }
+
+    /**
+     * Returns the item on this queue randomly.
+     *
+     * @return the item on this queue randomly
+     * @throws java.util.NoSuchElementException if this queue is empty
+     */
+    public int sample() {
+        if (N == 0) {
+            throw new NoSuchElementException();
+        }
+        return a[random.nextInt(N)];
+    }
+
+    /**
+     * Removes all items, the array is kept for reuse.
+     */
+    public void clear() {
+        N = 0;
+    }
+
+    /**
+     * Returns an iterator that iterates over the items in this queue in random order,
+     * each iterator has its own copy of the items.
+     *
+     * @return an iterator that iterates over the items in this queue in random order
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new RandomizedArrayIterator();
+    }
+
+    // an iterator, doesn't implement remove() since it's optional
+    private class RandomizedArrayIterator implements PrimitiveIterator.OfInt {
+        private int n = N;
+        private int[] copy = new int[N];
+
+        RandomizedArrayIterator() {
+            System.arraycopy(a, 0, copy, 0, N);
+        }
+
+        public boolean hasNext() {
+            return n > 0;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int r = random.nextInt(n);
+            int item = copy[r];
+            copy[r] = copy[--n];
+            return item;
+        }
+    }
+
+    /**
+     * Unit tests the <tt>IntRandomizedQueue</tt> data type, the same seed gives
+     * the same order and each item is dequeued once.
+     *
+     * @param args main function standard arguments
+     */
+    public static void main(String[] args) {
+        int size = 1000;
+        IntRandomizedQueue first = new IntRandomizedQueue(new Random(2016));
+        IntRandomizedQueue second = new IntRandomizedQueue(new Random(2016));
+        for (int i = 0; i < size; i++) {
+            first.enqueue(i);
+            second.enqueue(i);
+        }
+        boolean[] seen = new boolean[size];
+        while (!first.isEmpty()) {
+            int item = first.dequeue();
+            if (item != second.dequeue() || seen[item]) {
+                System.out.println("dequeue differs at item " + item);
+                return;
+            }
+            seen[item] = true;
+        }
+        System.out.println("IntRandomizedQueue - " + size
+                + " items dequeued once in the same order");
+    }
+}
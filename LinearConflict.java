@@ -0,0 +1,123 @@
+package mwong.myprojects.fifteenpuzzle;
+
+import mwong.myprojects.eightpuzzle.Direction;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac LinearConflict.java
+ *  Dependencies: ManhattanDistance.java, Heuristic.java, Direction.java
+ *
+ *  A immutable data type of manhattan distance plus linear conflict heuristic
+ *  of n-by-n board.  2 tiles in their goal row (or column) in reverse order
+ *  must leave the line to pass each other, each line adds 2 moves for every
+ *  tile not in the longest increasing order of its goal positions.
+ *
+ ****************************************************************************/
+
+public class LinearConflict extends ManhattanDistance {
+    private final int n;
+
+    /**
+     * Initializes the manhattan distance plus linear conflict of n-by-n board.
+     *
+     * @param n the given size of the row and column of the board
+     */
+    public LinearConflict(int n) {
+        super(n);
+        this.n = n;
+    }
+
+    // returns the tile at the position, with the tiles at positions a and b swapped
+    private static int tileAt(byte[] tiles, int pos, int a, int b) {
+        if (pos == a) {
+            return tiles[b];
+        }
+        if (pos == b) {
+            return tiles[a];
+        }
+        return tiles[pos];
+    }
+
+    // returns the moves of conflict of the given number of tiles in their goal line,
+    // the number of tails is the length of longest increasing order
+    private static int conflict(int count, int tails) {
+        return 2 * (count - Integer.bitCount(tails));
+    }
+
+    // patience sorting on a bitmap of tails, add the goal position in the line
+    // and remove the smallest tail greater than it
+    private static int addTail(int tails, int goal) {
+        int higher = tails & -(2 << goal);
+        return (tails & ~(higher & -higher)) | (1 << goal);
+    }
+
+    // returns the linear conflict of the row, with the tiles at positions a and b swapped
+    private int rowConflict(byte[] tiles, int row, int a, int b) {
+        int count = 0;
+        int tails = 0;
+        for (int pos = row * n; pos < row * n + n; pos++) {
+            int tile = tileAt(tiles, pos, a, b);
+            if (tile != 0 && (tile - 1) / n == row) {
+                tails = addTail(tails, (tile - 1) % n);
+                count++;
+            }
+        }
+        return conflict(count, tails);
+    }
+
+    // returns the linear conflict of the column, with the tiles at positions a and b swapped
+    private int colConflict(byte[] tiles, int col, int a, int b) {
+        int count = 0;
+        int tails = 0;
+        for (int pos = col; pos < n * n; pos += n) {
+            int tile = tileAt(tiles, pos, a, b);
+            if (tile != 0 && (tile - 1) % n == col) {
+                tails = addTail(tails, (tile - 1) / n);
+                count++;
+            }
+        }
+        return conflict(count, tails);
+    }
+
+    /**
+     * Returns the sum of manhattan distance and linear conflict of every
+     * row and column.
+     *
+     * @param tiles a byte array of tiles
+     * @return the sum of manhattan distance and linear conflict
+     */
+    public int estimate(byte[] tiles) {
+        int value = super.estimate(tiles);
+        for (int line = 0; line < n; line++) {
+            value += rowConflict(tiles, line, -1, -1) + colConflict(tiles, line, -1, -1);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the sum of manhattan distance and linear conflict after a tile
+     * moved.  A horizontal move keeps the order of the tiles in its row, only
+     * the 2 columns change, and a vertical move only the 2 rows.
+     *
+     * @param tiles a byte array of tiles after the move
+     * @param value the estimate before the move
+     * @param tile the moved tile
+     * @param from the position of the tile before the move
+     * @param to the position of the tile after the move
+     * @param dir the Direction of the space moved
+     * @return the sum of manhattan distance and linear conflict after the move
+     */
+    public int update(byte[] tiles, int value, int tile, int from, int to, Direction dir) {
+        value = super.update(tiles, value, tile, from, to, dir);
+        if (dir == Direction.LEFT || dir == Direction.RIGHT) {
+            return value + colConflict(tiles, from % n, -1, -1)
+                    - colConflict(tiles, from % n, from, to)
+                    + colConflict(tiles, to % n, -1, -1) - colConflict(tiles, to % n, from, to);
+        }
+        return value + rowConflict(tiles, from / n, -1, -1)
+                - rowConflict(tiles, from / n, from, to)
+                + rowConflict(tiles, to / n, -1, -1) - rowConflict(tiles, to / n, from, to);
+    }
+}
@@ -0,0 +1,64 @@
+package mwong.myprojects.eightpuzzle;
+
+import mwong.myprojects.utilities.Stopwatch;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac LinkBenchmark.java
+ *  Execution:   java LinkBenchmark
+ *  Dependencies: PatternDatabase.java, LinkLayout.java, Stopwatch.java
+ *
+ *  Benchmark of the links layout, walk every pattern to the goal state
+ *  with each LinkLayout
+ *
+ ****************************************************************************/
+
+public class LinkBenchmark {
+    private static final int SIZE_COMBO = 181440;
+    private static final int ROUNDS = 5;
+    private static final Direction[] DIRECTIONS = {Direction.RIGHT, Direction.DOWN, 
+        Direction.LEFT, Direction.UP};
+
+    // walk all patterns to the goal state, returns the total number of moves
+    private static long walkAll(PatternDatabase pd) {
+        long total = 0;
+        for (int i = 0; i < SIZE_COMBO; i++) {
+            int idx = i;
+            int value = pd.getPDvalue(idx);
+            while (value > 0) {
+                for (Direction dir : DIRECTIONS) {
+                    int next = pd.getLink(idx, dir);
+                    if (next != -1 && pd.getPDvalue(next) < value) {
+                        idx = next;
+                        value--;
+                        total++;
+                        break;
+                    }
+                }
+            }
+        }
+        return total;
+    }
+    
+    /**
+     *  test client to compare the links layout.
+     *  
+     *  @param args main function standard arguments
+     */
+    public static void main(String[] args) {
+        for (LinkLayout layout : LinkLayout.values()) {
+            PatternDatabase pd = new PatternDatabase(layout);
+            for (int round = 1; round <= ROUNDS; round++) {
+                Stopwatch stopwatch = new Stopwatch();
+                long moves = walkAll(pd);
+                double time = stopwatch.currentTime();
+                System.out.println(layout + "\tround : " + round + "\tmoves : " + moves 
+                        + "\ttime : " + time + "s\tns per move : " 
+                        + String.format("%.2f", time * 1e9 / moves));
+            }
+            System.out.println(layout + "\ttables in use : " + pd.getTableSize() + " bytes\n");
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package mwong.myprojects.eightpuzzle;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac LinkLayout.java
+ *
+ *  Enum LinkLayout for the links of pattern database
+ *
+ ****************************************************************************/
+
+/**
+ *  Layout of links between patterns that can be used.
+ *  <li>{@link #FLAT}</li>
+ *  <li>{@link #LINKLESS}</li>
+ */
+public enum LinkLayout {
+    /**
+     *  A single primitive table with 4 links of each index in a row.
+     */
+    FLAT,
+    /**
+     *  No table, the link is computed from the permutation rank.
+     */
+    LINKLESS;
+}
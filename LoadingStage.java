@@ -0,0 +1,23 @@
+package mwong.myprojects.eightpuzzle;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac LoadingStage.java
+ *
+ *  Enum LoadingStage of the initialization of pattern database
+ *
+ ****************************************************************************/
+
+/**
+ *  Stage of the initialization of pattern database.
+ *  <li>{@link #NOT_STARTED}</li>
+ *  <li>{@link #LOADING}</li>
+ *  <li>{@link #GENERATING}</li>
+ *  <li>{@link #SAVING}</li>
+ *  <li>{@link #READY}</li>
+ */
+public enum LoadingStage {
+    NOT_STARTED, LOADING, GENERATING, SAVING, READY;
+}
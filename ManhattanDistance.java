@@ -0,0 +1,83 @@
+package mwong.myprojects.fifteenpuzzle;
+
+import mwong.myprojects.eightpuzzle.Direction;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac ManhattanDistance.java
+ *  Dependencies: Heuristic.java, Direction.java
+ *
+ *  A immutable data type of manhattan distance heuristic of n-by-n board,
+ *  the sum of horizontal and vertical distance of each tile to its goal
+ *  position
+ *
+ ****************************************************************************/
+
+public class ManhattanDistance implements Heuristic {
+    private final int n;
+    // distance of each tile at each position, [tile * size + position]
+    private final byte[] distance;
+
+    /**
+     * Initializes the manhattan distance of n-by-n board.
+     * 
+     * @param n the given size of the row and column of the board
+     */
+    public ManhattanDistance(int n) {
+        this.n = n;
+        int size = n * n;
+        distance = new byte[size * size];
+        for (int tile = 1; tile < size; tile++) {
+            int goal = tile - 1;
+            for (int pos = 0; pos < size; pos++) {
+                distance[tile * size + pos] = (byte) (Math.abs(goal / n - pos / n) 
+                        + Math.abs(goal % n - pos % n));
+            }
+        }
+    }
+
+    /**
+     * Returns the distance of the tile at the position to its goal position.
+     * 
+     * @param tile the given tile
+     * @param pos the given position
+     * @return the distance of the tile to its goal position
+     */
+    protected int distance(int tile, int pos) {
+        return distance[tile * n * n + pos];
+    }
+
+    /**
+     * Returns the sum of manhattan distance of every tile.
+     * 
+     * @param tiles a byte array of tiles
+     * @return the sum of manhattan distance of every tile
+     */
+    public int estimate(byte[] tiles) {
+        int value = 0;
+        for (int pos = 0; pos < tiles.length; pos++) {
+            if (tiles[pos] != 0) {
+                value += distance(tiles[pos], pos);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the sum of manhattan distance after a tile moved, only the 
+     * distance of the moved tile changes.
+     * 
+     * @param tiles a byte array of tiles after the move
+     * @param value the estimate before the move
+     * @param tile the moved tile
+     * @param from the position of the tile before the move
+     * @param to the position of the tile after the move
+     * @param dir the Direction of the space moved
+     * @return the sum of manhattan distance after the move
+     */
+    public int update(byte[] tiles, int value, int tile, int from, int to, Direction dir) {
+        return value - distance(tile, from) + distance(tile, to);
+    }
+}
@@ -0,0 +1,199 @@
+package mwong.myprojects.utilities;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation:  javac ParallelBreadthFirstSearch.java
+ *  Dependencies: StateSpace.java
+ *
+ * A data type of breadth first search over a ranked state space using multiple
+ * cores.  Each layer of the frontier is split across a fork join pool, the
+ * visited states is a lock free bitmap over the rank space.  Every task 
+ * collects the states it discovered in its own buffer, the next frontier is
+ * merged by the prefix sum of the buffer sizes without any lock.
+ *
+ ****************************************************************************/
+
+public class ParallelBreadthFirstSearch {
+    // number of frontier states expanded by a single task
+    private static final int THRESHOLD = 2048;
+    private final StateSpace space;
+    private final int parallelism;
+    private int[] layerCounts;
+    private IntConsumer layerListener = depth -> { };
+    
+    /**
+     * Initializes the search of the state space with the number of processors.
+     * 
+     * @param space the given StateSpace to search
+     */
+    public ParallelBreadthFirstSearch(StateSpace space) {
+        this(space, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Initializes the search of the state space with the given parallelism level.
+     * 
+     * @param space the given StateSpace to search
+     * @param parallelism the given number of worker threads
+     */
+    public ParallelBreadthFirstSearch(StateSpace space, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.space = space;
+        this.parallelism = parallelism;
+    }
+    
+    /**
+     * Set the listener called with the depth after each layer is completed.
+     * 
+     * @param layerListener the given listener of the depth of completed layer
+     */
+    public void setLayerListener(IntConsumer layerListener) {
+        this.layerListener = layerListener;
+    }
+    
+    /**
+     * Returns the depth of every state from the goal state, -1 if the state 
+     * cannot be reached.
+     * 
+     * @param goal the given rank of the goal state
+     * @return a byte array of depth of every state from the goal state
+     */
+    public byte[] search(int goal) {
+        int size = space.size();
+        byte[] depth = new byte[size];
+        Arrays.fill(depth, (byte) -1);
+        AtomicLongArray visited = new AtomicLongArray((size + 63) >>> 6);
+        visited.set(goal >>> 6, 1L << goal);
+        depth[goal] = 0;
+        
+        int[] frontier = {goal};
+        int frontierSize = 1;
+        int[] counts = new int[Byte.MAX_VALUE + 1];
+        int layers = 0;
+        counts[layers++] = 1;
+        
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            byte moves = 0;
+            while (true) {
+                moves++;
+                int tasks = (frontierSize + THRESHOLD - 1) / THRESHOLD;
+                int[][] found = new int[tasks][];
+                int[] foundCounts = new int[tasks];
+                pool.invoke(new Expand(frontier, frontierSize, 0, tasks, visited, 
+                        depth, moves, found, foundCounts));
+                
+                int nextSize = 0;
+                for (int count : foundCounts) {
+                    nextSize += count;
+                }
+                if (nextSize == 0) {
+                    break;
+                }
+                int[] next = new int[nextSize];
+                int offset = 0;
+                for (int i = 0; i < tasks; i++) {
+                    System.arraycopy(found[i], 0, next, offset, foundCounts[i]);
+                    offset += foundCounts[i];
+                }
+                frontier = next;
+                frontierSize = nextSize;
+                counts[layers++] = nextSize;
+                layerListener.accept(moves);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        layerCounts = Arrays.copyOf(counts, layers);
+        return depth;
+    }
+    
+    /**
+     * Returns the number of states in each layer of the last search.
+     * 
+     * @return an integer array of number of states at each depth
+     */
+    public int[] getLayerCounts() {
+        return layerCounts.clone();
+    }
+    
+    // expand a range of frontier slices, split in half until a single slice
+    private class Expand extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int[] frontier;
+        private final int frontierSize;
+        private final int lo, hi;
+        private final AtomicLongArray visited;
+        private final byte[] depth;
+        private final byte moves;
+        private final int[][] found;
+        private final int[] foundCounts;
+        
+        Expand(int[] frontier, int frontierSize, int lo, int hi, AtomicLongArray visited,
+                byte[] depth, byte moves, int[][] found, int[] foundCounts) {
+            this.frontier = frontier;
+            this.frontierSize = frontierSize;
+            this.lo = lo;
+            this.hi = hi;
+            this.visited = visited;
+            this.depth = depth;
+            this.moves = moves;
+            this.found = found;
+            this.foundCounts = foundCounts;
+        }
+        
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Expand(frontier, frontierSize, lo, mid, visited, depth, 
+                        moves, found, foundCounts),
+                        new Expand(frontier, frontierSize, mid, hi, visited, depth,
+                        moves, found, foundCounts));
+                return;
+            }
+            int start = lo * THRESHOLD;
+            int end = Math.min(start + THRESHOLD, frontierSize);
+            int degree = space.degree();
+            int[] buffer = new int[(end - start) * degree];
+            int[] neighbors = new int[degree];
+            int count = 0;
+            for (int i = start; i < end; i++) {
+                int moveCount = space.neighbors(frontier[i], neighbors);
+                for (int move = 0; move < moveCount; move++) {
+                    int next = neighbors[move];
+                    if (mark(next)) {
+                        depth[next] = moves;
+                        buffer[count++] = next;
+                    }
+                }
+            }
+            found[lo] = buffer;
+            foundCounts[lo] = count;
+        }
+        
+        // set the visited bit of the state, returns true if it was not set
+        private boolean mark(int state) {
+            int word = state >>> 6;
+            long bit = 1L << state;
+            long current = visited.get(word);
+            while ((current & bit) == 0) {
+                if (visited.compareAndSet(word, current, current | bit)) {
+                    return true;
+                }
+                current = visited.get(word);
+            }
+            return false;
+        }
+    }
+}
@@ -1,15 +1,24 @@
 package mwong.myprojects.eightpuzzle;
 
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.InputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
 
+import mwong.myprojects.utilities.ParallelBreadthFirstSearch;
+import mwong.myprojects.utilities.StateSpace;
 import mwong.myprojects.utilities.Stopwatch;
 
 /****************************************************************************
@@ -18,106 +27,423 @@ import mwong.myprojects.utilities.Stopwatch;
  *
  *  Compilation: javac PD8Combo.java
  *  Execution:   java PD8Combo
- *  Dependencies: Stopwatch.java, Direction.java
+ *  Dependencies: Stopwatch.java, Direction.java, LinkLayout.java, StateSpace.java,
+ *                ParallelBreadthFirstSearch.java, SolverMetrics.java, StorageMode.java,
+ *                SymmetryPatternDatabase.java
  *
  *  A immutable data type of all combinations of 8puzzle pattern database
  *
  ****************************************************************************/
 
 public class PatternDatabase {
-    private static final String DIRECTORY = "database";
+    // directory of the data file, a directory on /dev/shm shares the tables
+    // in memory by every process of the host, e.g. -Dpd8.directory=/dev/shm/8puzzle
+    private static final String DIRECTORY = System.getProperty("pd8.directory", "database");
     private static final String SEPARATOR = System.getProperty("file.separator");
     private static final String FILEPATH = DIRECTORY + SEPARATOR + "pd8.db";
+    private static final String LOCKPATH = FILEPATH + ".lock";
     private static final int SIZE_COMBO = 181440;
+    // number of even permutations of 8 tiles, the block size of each zero position
+    private static final int SIZE_PERMUTATION = 20160;
     private static final int[] PARTIAL = {0, 0x07, 0x003F, 0x01FF, 0x0FFF, 0x007FFF};       
+    // position of each cell reflected across the main diagonal
+    private static final int[] TRANSPOSE = {0, 3, 6, 1, 4, 7, 2, 5, 8};
+    // data file header : magic, version, number of states, reserved, checksum
+    // followed by pattern values, 4 links of each index, start of each depth,
+    // the index of patterns ordered by depth and the best moves aligned to
+    // 8 bytes, little endian
+    private static final int FILE_MAGIC = 0x50443844;
+    private static final int FILE_VERSION = 3;
+    private static final int HEADER_SIZE = 24;
+    private static final int LINKS_OFFSET = HEADER_SIZE + SIZE_COMBO;
+    private static final int DEPTH_OFFSET = LINKS_OFFSET + SIZE_COMBO * 4 * 4;
+    private static final int STATES_OFFSET = DEPTH_OFFSET + PatternTables.DEPTH_SLOTS * 4;
+    private static final int BEST_MOVES_OFFSET = (STATES_OFFSET + SIZE_COMBO * 4 + 7) & ~7;
+    private static final int FILE_SIZE = BEST_MOVES_OFFSET
+            + PatternTables.getBestMoveWords(SIZE_COMBO) * 8;
+    // number of bytes verified between the progress updates
+    private static final int CHUNK_SIZE = 1 << 18;
+    private static final Direction[] DIRECTIONS = {Direction.RIGHT, Direction.DOWN,
+        Direction.LEFT, Direction.UP};
     
-    private static HashMap<Integer, Integer> keyMap; 
     private static byte[] initCombo = {1, 2, 3, 4, 5, 6, 7, 8, 0};
-    // compress the 8puzzle into a 32 bit key
-    // use the key index link to 4 direction and number of move from initial board 
-    private static int[] keys; 
-    private static int[][] links; 
-    private static byte[] patternValue; 
-    private static boolean ready2use = false;
+    // the index of a pattern is the permutation rank of its 32 bit key:
+    // zero position * 20160 + lehmer rank of the first 6 tiles, the order
+    // of the last 2 tiles is fixed by the even inversion of solvable board
+    // use the index link to 4 direction and number of move from initial board,
+    // the tables are loaded or generated exactly once and shared by all instances
+    // of the same layout, the linkless tables do not keep the links
+    private static volatile PatternTables shared;
+    private static volatile PatternTables sharedLinkless;
+    // the symmetry reduced tables of each layout, derived from the full tables once
+    private static volatile SymmetryPatternDatabase sharedSymmetry;
+    private static volatile SymmetryPatternDatabase sharedSymmetryLinkless;
+    // progress of the initialization, read by other threads
+    private static volatile LoadingStage stage = LoadingStage.NOT_STARTED;
+    private static volatile int progressDepth;
+    private static volatile long progressBytes;
+    // tables of FULL storage, reduced tables of SYMMETRY storage, the other is null
+    private final PatternTables tables;
+    private final SymmetryPatternDatabase reduced;
+    private final LinkLayout linkLayout;
        
     /**
-     * Initializes the PD8Combo object.
+     * Initializes the PD8Combo object with flat links table.
      */
     public PatternDatabase() {
-        if (ready2use) {
-            return;
+        this(LinkLayout.FLAT);
+    }
+       
+    /**
+     * Initializes the PD8Combo object with the given layout of links.
+     * 
+     * @param linkLayout the given LinkLayout of links
+     */
+    public PatternDatabase(LinkLayout linkLayout) {
+        this(sharedTables(linkLayout), linkLayout);
+    }
+       
+    /**
+     * Initializes the PD8Combo object with the given layout of links and
+     * storage of tables.
+     * 
+     * @param linkLayout the given LinkLayout of links
+     * @param storage the given StorageMode of tables
+     */
+    public PatternDatabase(LinkLayout linkLayout, StorageMode storage) {
+        this.linkLayout = linkLayout;
+        if (storage == StorageMode.SYMMETRY) {
+            tables = null;
+            reduced = sharedSymmetry(linkLayout);
+        } else {
+            tables = sharedTables(linkLayout);
+            reduced = null;
         }
-              
-        // if database file exists, load from file
-        // otherwise re-generate and save in file
+    }
+    
+    /**
+     * Initializes the PD8Combo object with the given tables and layout of links.
+     * 
+     * @param tables the given PatternTables
+     * @param linkLayout the given LinkLayout of links
+     */
+    protected PatternDatabase(PatternTables tables, LinkLayout linkLayout) {
+        this.tables = tables;
+        this.reduced = null;
+        this.linkLayout = linkLayout;
+    }
+    
+    // returns the shared tables of the layout, the first caller load or generate
+    // the tables while other callers wait, the volatile write publish the
+    // snapshot safely; the linkless tables are a view of the flat tables if loaded
+    private static PatternTables sharedTables(LinkLayout linkLayout) {
+        boolean withLinks = linkLayout == LinkLayout.FLAT;
+        PatternTables result = withLinks ? shared : sharedLinkless;
+        if (result == null) {
+            synchronized (PatternDatabase.class) {
+                result = withLinks ? shared : sharedLinkless;
+                if (result == null) {
+                    if (withLinks) {
+                        result = initTables(true);
+                        shared = result;
+                    } else {
+                        result = (shared != null) ? shared.withoutLinks() : initTables(false);
+                        sharedLinkless = result;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+    
+    // returns the shared symmetry reduced tables of the layout, derived from the
+    // full tables of the same layout; the full tables are not kept unless
+    // shared by a FULL storage pattern database already
+    private static SymmetryPatternDatabase sharedSymmetry(LinkLayout linkLayout) {
+        boolean withLinks = linkLayout == LinkLayout.FLAT;
+        SymmetryPatternDatabase result = withLinks ? sharedSymmetry : sharedSymmetryLinkless;
+        if (result == null) {
+            synchronized (PatternDatabase.class) {
+                result = withLinks ? sharedSymmetry : sharedSymmetryLinkless;
+                if (result == null) {
+                    PatternTables full = withLinks ? shared : sharedLinkless;
+                    if (full == null) {
+                        full = (!withLinks && shared != null) ? shared.withoutLinks()
+                                : initTables(withLinks);
+                    }
+                    result = new SymmetryPatternDatabase(full);
+                    if (withLinks) {
+                        sharedSymmetry = result;
+                    } else {
+                        sharedSymmetryLinkless = result;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+    
+    // if database file exists, load from file
+    // otherwise re-generate and save in file, the first process generate while
+    // other processes of the same directory wait on the lock file then load
+    private static PatternTables initTables(boolean withLinks) {
+        SolverMetrics metrics = SolverMetrics.getInstance();
+        Stopwatch total = new Stopwatch();
+        stage = LoadingStage.LOADING;
+        PatternTables result = loadOrNull(withLinks, metrics, total);
+        if (result == null) {
+            if (!(new File(DIRECTORY)).exists()) {
+                (new File(DIRECTORY)).mkdirs();
+            }
+            try (FileChannel channel = FileChannel.open(Paths.get(LOCKPATH),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    // another process may have saved the data file while waiting
+                    result = loadOrNull(withLinks, metrics, total);
+                    if (result == null) {
+                        result = genAndSave(withLinks, metrics, total);
+                    }
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException ex) {
+                // no lock in a read only directory, generate for this process only
+                if (result == null) {
+                    result = genAndSave(withLinks, metrics, total);
+                }
+            }
+        }
+        stage = LoadingStage.READY;
+        return result;
+    }
+
+    // returns the tables of the data file, null if missing or invalid
+    private static PatternTables loadOrNull(boolean withLinks, SolverMetrics metrics,
+            Stopwatch total) {
         try {
-            Stopwatch stopwatch = new Stopwatch();
-            loadFile();
+            PatternTables result = loadTables(withLinks);
+            double time = total.currentTime();
+            metrics.recordLoad("FILE", time);
             System.out.println("Pattern Database 8puzzle - load from data file successed : " 
-                    + stopwatch.currentTime() + "s");
+                    + time + "s");
+            return result;
         } catch (Exception ex) {
-            (new File(FILEPATH)).delete();
-            genPattern();
-            ready2use = true;
-            try {
-                Stopwatch stopwatch = new Stopwatch();
-                saveFile();
-                System.out.println("Pattern Database 8puzzle - save data set in file successed : " 
-                        + stopwatch.currentTime() + "s");       
-            } catch (Exception ex2) {
-                if ((new File(FILEPATH)).exists()) {
-                    (new File(FILEPATH)).delete();
-                }
+            return null;
+        }
+    }
+
+    // generate the tables and save in file, then use the saved file in place
+    // of the generated tables that the heap copy is released
+    private static PatternTables genAndSave(boolean withLinks, SolverMetrics metrics,
+            Stopwatch total) {
+        (new File(FILEPATH)).delete();
+        stage = LoadingStage.GENERATING;
+        PatternTables result = genTablesParallel(withLinks);
+        metrics.recordLoad("GENERATED", total.currentTime());
+        try {
+            Stopwatch stopwatch = new Stopwatch();
+            stage = LoadingStage.SAVING;
+            saveTables(result, Paths.get(FILEPATH));
+            result = loadTables(withLinks);
+            System.out.println("Pattern Database 8puzzle - save data set in file successed : " 
+                    + stopwatch.currentTime() + "s");       
+        } catch (Exception ex) {
+            if ((new File(FILEPATH)).exists()) {
+                (new File(FILEPATH)).delete();
             }
-        }    
+        }
+        return result;
+    }
+    
+    /**
+     *  Returns the stage of the initialization.
+     *  
+     *  @return the LoadingStage of the initialization
+     */
+    protected static LoadingStage getStage() {
+        return stage;
+    }
+    
+    /**
+     *  Returns the depth of the last completed layer of pattern generation.
+     *  
+     *  @return the depth of the last completed layer of pattern generation
+     */
+    protected static int getProgressDepth() {
+        return progressDepth;
+    }
+    
+    /**
+     *  Returns the number of bytes of data file loaded.
+     *  
+     *  @return the number of bytes of data file loaded
+     */
+    protected static long getProgressBytes() {
+        return progressBytes;
+    }
+    
+    /**
+     *  Returns the size of data file in bytes.
+     *  
+     *  @return the size of data file in bytes
+     */
+    protected static long getFileSize() {
+        return FILE_SIZE;
     }
        
-    // load the database pattern from file
-    private void loadFile() throws Exception { 
-        keyMap = new HashMap<Integer, Integer>(); 
-        keys = new int[SIZE_COMBO];
-        links = new int[SIZE_COMBO][4];
-        patternValue = new byte[SIZE_COMBO];
+    /**
+     *  Load the database pattern from file, the tables are used in place
+     *  of the read only memory mapped file.  The links section is not
+     *  mapped in LINKLESS layout.
+     *  
+     *  @return the PatternTables of the data file
+     *  @throws Exception if the data file is missing or invalid
+     */
+    protected PatternTables loadFile() throws Exception { 
+        return loadTables(linkLayout == LinkLayout.FLAT);
+    }
+    
+    private static PatternTables loadTables(boolean withLinks) throws Exception {
+        ByteBuffer head;
+        ByteBuffer links = null;
+        ByteBuffer tail;
+        try (FileChannel channel = FileChannel.open(Paths.get(FILEPATH), 
+                StandardOpenOption.READ)) {
+            if (channel.size() != FILE_SIZE) {
+                throw new IOException("Pattern Database 8puzzle - invalid data file size");
+            }
+            head = channel.map(FileChannel.MapMode.READ_ONLY, 0, LINKS_OFFSET);
+            head.order(ByteOrder.LITTLE_ENDIAN);
+            if (head.getInt(0) != FILE_MAGIC || head.getInt(4) != FILE_VERSION
+                    || head.getInt(8) != SIZE_COMBO) {
+                throw new IOException("Pattern Database 8puzzle - invalid data file header");
+            }
+            if (head.getLong(16) != checksum(channel)) {
+                throw new IOException("Pattern Database 8puzzle - data file checksum mismatch");
+            }
+            // the sections before and after the links, the links only if used
+            if (withLinks) {
+                links = channel.map(FileChannel.MapMode.READ_ONLY, LINKS_OFFSET, 
+                        DEPTH_OFFSET - LINKS_OFFSET);
+            }
+            tail = channel.map(FileChannel.MapMode.READ_ONLY, DEPTH_OFFSET, 
+                    FILE_SIZE - DEPTH_OFFSET);
+        }
+        return new PatternTables(head.slice(HEADER_SIZE, SIZE_COMBO),
+                (links == null) ? null : links.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer(),
+                tail.slice(0, PatternTables.DEPTH_SLOTS * 4)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer(),
+                tail.slice(STATES_OFFSET - DEPTH_OFFSET, SIZE_COMBO * 4)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer(),
+                tail.slice(BEST_MOVES_OFFSET - DEPTH_OFFSET, FILE_SIZE - BEST_MOVES_OFFSET)
+                .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer());
+    }
+    
+    /**
+     *  Save the database pattern in file, write in a temporary file with
+     *  a single transfer, then rename to the data file.  The links are
+     *  computed from the permutation rank if the tables have no links.
+     *  
+     *  @throws Exception if the data file cannot be written, or the storage
+     *          is SYMMETRY
+     */
+    protected void saveFile() throws Exception {
+        saveFile(Paths.get(FILEPATH));
+    }
+    
+    /**
+     *  Save the database pattern in the given file instead of the data file,
+     *  e.g. a file of a temporary directory; the lock of the data file is
+     *  not used.
+     *  
+     *  @param path the given path of the file
+     *  @throws Exception if the file cannot be written, or the storage is SYMMETRY
+     */
+    protected void saveFile(Path path) throws Exception {
+        if (tables == null) {
+            throw new UnsupportedOperationException("Pattern Database 8puzzle - "
+                    + "the symmetry reduced tables are not saved");
+        }
+        saveTables(tables, path);
+    }
+    
+    private static void saveTables(PatternTables tables, Path path) throws Exception {
+        File directory = path.toAbsolutePath().getParent().toFile();
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(FILE_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(SIZE_COMBO).putInt(0);
+        buffer.put(HEADER_SIZE, tables.getPatternValues(), 0, SIZE_COMBO);
+        IntBuffer links = tables.getLinks();
+        if (links != null) {
+            buffer.position(LINKS_OFFSET);
+            buffer.asIntBuffer().put(links);
+        } else {
+            for (int idx = 0; idx < SIZE_COMBO; idx++) {
+                for (Direction dir : DIRECTIONS) {
+                    buffer.putInt(LINKS_OFFSET + (idx * 4 + dir.getValue()) * 4, 
+                            computeLink(idx, dir));
+                }
+            }
+        }
+        buffer.position(DEPTH_OFFSET);
+        buffer.asIntBuffer().put(tables.getDepthStarts());
+        buffer.position(STATES_OFFSET);
+        buffer.asIntBuffer().put(tables.getStatesByDepth());
+        buffer.position(BEST_MOVES_OFFSET);
+        buffer.asLongBuffer().put(tables.getBestMoves());
+        buffer.putLong(16, checksum(buffer));
+        buffer.clear();
         
-        InputStream is = new FileInputStream(FILEPATH);
-        DataInputStream dis = new DataInputStream(new BufferedInputStream(is));
-        dis.read(patternValue);
-        for (int i = 0; i < SIZE_COMBO; i++) {
-            keys[i] = dis.readInt();
-            keyMap.put(keys[i], i);
-            links[i][Direction.RIGHT.getValue()] = dis.readInt();
-            links[i][Direction.DOWN.getValue()] = dis.readInt();
-            links[i][Direction.LEFT.getValue()] = dis.readInt();
-            links[i][Direction.UP.getValue()] = dis.readInt();
-        }                                                     
-        dis.close();
-    }
-    
-    // save the database pattern in file
-    private void saveFile() throws Exception {
-        if (!(new File(DIRECTORY)).exists()) {
-            (new File(DIRECTORY)).mkdir();
-        }
-        if ((new File(FILEPATH)).exists()) {
-            (new File(FILEPATH)).delete();
-        }
-        FileOutputStream fos = new FileOutputStream(FILEPATH);
-        DataOutputStream dos = new DataOutputStream(fos);
-        dos.write(patternValue);
-        dos.flush();
-        for (int i = 0; i < SIZE_COMBO; i++) {
-            dos.writeInt(keys[i]);
-            dos.writeInt(links[i][Direction.RIGHT.getValue()]);
-            dos.writeInt(links[i][Direction.DOWN.getValue()]);
-            dos.writeInt(links[i][Direction.LEFT.getValue()]);
-            dos.writeInt(links[i][Direction.UP.getValue()]);
-            dos.flush();
-        }
-        dos.close();
+        // a temporary file per process, other processes may save at the same time
+        Path temp = path.resolveSibling(path.getFileName() + "." 
+                + ProcessHandle.current().pid() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, 
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    // returns the CRC32 checksum of the data after the file header
+    private static long checksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        ByteBuffer data = buffer.duplicate();
+        for (int pos = HEADER_SIZE; pos < FILE_SIZE; pos += CHUNK_SIZE) {
+            data.limit(Math.min(pos + CHUNK_SIZE, FILE_SIZE)).position(pos);
+            crc.update(data);
+            progressBytes = data.limit();
+        }
+        return crc.getValue();
+    }
+    
+    // returns the CRC32 checksum of the data after the file header, read
+    // through the channel that a section not mapped is not kept in memory
+    private static long checksum(FileChannel channel) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer data = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        for (int pos = HEADER_SIZE; pos < FILE_SIZE; pos += CHUNK_SIZE) {
+            data.clear().limit(Math.min(CHUNK_SIZE, FILE_SIZE - pos));
+            while (data.hasRemaining()) {
+                if (channel.read(data, pos + data.position()) == -1) {
+                    throw new IOException("Pattern Database 8puzzle - invalid data file size");
+                }
+            }
+            data.flip();
+            crc.update(data);
+            progressBytes = pos + data.limit();
+        }
+        return crc.getValue();
     }
        
     // compress the tiles combo with space in to 32 bits key
-    private int combo2key(byte[] combo) {
+    private static int combo2key(byte[] combo) {
         int zeroPos = 0;
         int key = 0;
               
@@ -131,6 +457,120 @@ public class PatternDatabase {
         return (key << 4) | zeroPos;
     }
        
+    // convert the 32 bits key to the permutation rank, -1 if unsolvable
+    private static int key2rank(int key) {
+        int zeroPos = key & 0x000F;
+        int tiles = key >> 4;
+        int used = 0;
+        int inversion = 0;
+        int rank = 0;
+        
+        for (int i = 0; i < 8; i++) {
+            int value = (tiles >> ((7 - i) * 3)) & PARTIAL[1];
+            // number of smaller tiles not used yet
+            int lehmer = value - Integer.bitCount(used & ((1 << value) - 1));
+            used |= 1 << value;
+            inversion += lehmer;
+            if (i < 6) {
+                rank = rank * (8 - i) + lehmer;
+            }
+        }
+        if ((inversion & 1) == 1) {
+            return -1;
+        }
+        return zeroPos * SIZE_PERMUTATION + rank;
+    }
+    
+    // convert the permutation rank back to the 32 bits key
+    private static int rank2key(int rank) {
+        int zeroPos = rank / SIZE_PERMUTATION;
+        int perm = rank % SIZE_PERMUTATION;
+        int lehmer = 0;
+        int inversion = 0;
+        
+        for (int i = 5; i > 0; i--) {
+            int digit = perm % (8 - i);
+            perm = perm / (8 - i);
+            lehmer |= digit << (i * 3);
+            inversion += digit;
+        }
+        lehmer |= perm;
+        inversion += perm;
+        
+        int used = 0;
+        int tiles = 0;
+        for (int i = 0; i < 6; i++) {
+            int value = nthUnused(used, (lehmer >> (i * 3)) & PARTIAL[1]);
+            used |= 1 << value;
+            tiles = (tiles << 3) | value;
+        }
+        // last 2 tiles keep the total inversion even
+        int first = nthUnused(used, 0);
+        int second = nthUnused(used, 1);
+        if ((inversion & 1) == 0) {
+            tiles = (((tiles << 3) | first) << 3) | second;
+        } else {
+            tiles = (((tiles << 3) | second) << 3) | first;
+        }
+        return (tiles << 4) | zeroPos;
+    }
+    
+    // returns the n-th smallest tile value (0 to 7) not in used bits
+    private static int nthUnused(int used, int n) {
+        int unused = ~used & 0xFF;
+        while (n-- > 0) {
+            unused &= unused - 1;
+        }
+        return Integer.numberOfTrailingZeros(unused);
+    }
+    
+    // returns the key after the space move in given direction, -1 if not possible
+    private static int moveKey(int keyValue, Direction dir) {
+        int zero = keyValue & 0x000F;
+        int key = keyValue >> 4;
+        
+        switch (dir) {
+        // space Right, tile left
+        case RIGHT:
+            if (zero % 3 < 2) {
+                return (key << 4) | (zero + 1);
+            }
+            return -1;
+        // space down, tile up
+        case DOWN:
+            if (zero < 6) {
+                int base = key >> ((8 - zero) * 3);
+                int leftover = key & PARTIAL[5 - zero];
+                int self = (key >> ((5 - zero) * 3)) & PARTIAL[1];
+                int rotKey = (key >> ((6 - zero) * 3)) & PARTIAL[2];
+                
+                return (((((((base << 3) | self) << 6) | rotKey) << ((5 - zero) * 3)) 
+                        | leftover) << 4) | (zero + 3);
+            }
+            return -1;
+        // space left, tile right
+        case LEFT:
+            if (zero % 3 > 0) {
+                return (key << 4) | (zero - 1);
+            }
+            return -1;
+        // space up, tile down 
+        case UP:
+            if (zero > 2) {
+                int base = key >> ((11 - zero) * 3);
+                int leftover = key & PARTIAL[8 - zero];
+                int self = (key >> ((10 - zero) * 3)) & PARTIAL[1];
+                int rotKey = (key >> ((8 - zero) * 3)) & PARTIAL[2];
+                
+                return (((((((base << 6) | rotKey) << 3) | self) << ((8 - zero) * 3))
+                        | leftover) << 4) | (zero - 3);
+            }
+            return -1;
+        default:
+            return -1;
+        }
+    }
+       
     /**
      *  Returns the set of 8 tiles of the puzzle with space.
      *  
@@ -138,8 +578,9 @@ public class PatternDatabase {
      *  @return a integer array of 8 tiles of puzzle with space
      */
     protected int[] idx2combo(int idx) {
-        int zeroPos = keys[idx] & 0x000F;
-        int key = keys[idx] >> 4;
+        int keyValue = rank2key(idx);
+        int zeroPos = keyValue & 0x000F;
+        int key = keyValue >> 4;
         
         int[] combo = {-1, -1, -1, -1, -1, -1, -1, -1, -1};
         combo[zeroPos] = 0;
@@ -159,12 +600,18 @@ public class PatternDatabase {
      *  @return index of compress pattern, -1 if no such pattern
      */
     protected int getKeyIndex(byte[] combo) {
-        int key = combo2key(combo);
-        if (keyMap.containsKey(key)) {
-            return keyMap.get(key);
-        } else {
-            return -1;
-        }
+        return keyIndex(combo);
+    }
+    
+    /**
+     *  Returns the index of compress pattern, the permutation rank only, no
+     *  table is used.
+     *  
+     *  @param combo the given sequence of 8 tiles with space
+     *  @return index of compress pattern, -1 if no such pattern
+     */
+    protected static int keyIndex(byte[] combo) {
+        return key2rank(combo2key(combo));
     }
        
     /**
@@ -175,7 +622,49 @@ public class PatternDatabase {
      *  @return index of pattern after the move
      */
     protected int getLink(int index, Direction dir) {
-        return links[index][dir.getValue()];
+        if (linkLayout == LinkLayout.LINKLESS) {
+            return computeLink(index, dir);
+        }
+        if (reduced != null) {
+            return reduced.getLink(index, dir);
+        }
+        return tables.getLink(index, dir);
+    }
+    
+    // returns the index of pattern after the move without links table,
+    // a horizontal move keep the order of tiles, only the zero position changes
+    private static int computeLink(int index, Direction dir) {
+        int zero = index / SIZE_PERMUTATION;
+        switch (dir) {
+        case RIGHT:
+            return (zero % 3 < 2) ? index + SIZE_PERMUTATION : -1;
+        case LEFT:
+            return (zero % 3 > 0) ? index - SIZE_PERMUTATION : -1;
+        default:
+            int nextKey = moveKey(rank2key(index), dir);
+            if (nextKey == -1) {
+                return -1;
+            }
+            return key2rank(nextKey);
+        }
+    }
+    
+    /**
+     *  Returns the layout of links in use.
+     *  
+     *  @return the LinkLayout of links in use
+     */
+    protected LinkLayout getLinkLayout() {
+        return linkLayout;
+    }
+    
+    /**
+     *  Returns the storage of tables in use.
+     *  
+     *  @return the StorageMode of tables in use
+     */
+    protected StorageMode getStorageMode() {
+        return (reduced != null) ? StorageMode.SYMMETRY : StorageMode.FULL;
     }
               
     /**
@@ -185,29 +674,192 @@ public class PatternDatabase {
      *  @return number of the pattern value of the index
      */
     protected int getPDvalue(int index) {
-        return patternValue[index];
+        if (reduced != null) {
+            return reduced.getPDvalue(index);
+        }
+        return tables.getPDvalue(index);
     }
        
+    /**
+     *  Returns the largest pattern value of all patterns.
+     *  
+     *  @return the largest pattern value of all patterns
+     */
+    protected int getMaxDepth() {
+        if (reduced != null) {
+            return reduced.getMaxDepth();
+        }
+        return tables.getMaxDepth();
+    }
+    
+    /**
+     *  Returns the number of patterns of the pattern value.
+     *  
+     *  @param depth the given pattern value
+     *  @return number of patterns of the pattern value, 0 if out of range
+     */
+    protected int getDepthCount(int depth) {
+        if (depth < 0 || depth > getMaxDepth()) {
+            return 0;
+        }
+        if (reduced != null) {
+            return reduced.getDepthCount(depth);
+        }
+        return tables.getDepthCount(depth);
+    }
+    
+    /**
+     *  Returns the index of the n-th pattern of the pattern value, patterns
+     *  of the same pattern value are in order of index; in SYMMETRY storage
+     *  the canonical patterns first, then their symmetry patterns.
+     *  
+     *  @param depth the given pattern value
+     *  @param n the given position from 0 to getDepthCount(depth) - 1
+     *  @return index of the n-th pattern of the pattern value
+     */
+    protected int getIndexAtDepth(int depth, int n) {
+        if (reduced != null) {
+            return reduced.getIndexAtDepth(depth, n);
+        }
+        return tables.getStateAtDepth(depth, n);
+    }
+    
+    /**
+     *  Returns the index of the symmetry pattern, reflected across the main 
+     *  diagonal with the tiles relabeled to keep the goal state, both patterns 
+     *  have the same pattern value.
+     *  
+     *  @param index the given index of the pattern
+     *  @return index of the symmetry pattern
+     */
+    protected int getSymmetryIndex(int index) {
+        return symmetryIndex(index);
+    }
+    
+    /**
+     *  Returns the index of the symmetry pattern, the permutation rank only,
+     *  no table is used.
+     *  
+     *  @param index the given index of the pattern
+     *  @return index of the symmetry pattern
+     */
+    protected static int symmetryIndex(int index) {
+        int keyValue = rank2key(index);
+        int zeroPos = keyValue & 0x000F;
+        int key = keyValue >> 4;
+        
+        // tile of each cell of the symmetry pattern packed in 4 bits
+        long cells = 0;
+        for (int i = 8; i >= 0; i--) {
+            if (i != zeroPos) {
+                cells |= (long) TRANSPOSE[key & PARTIAL[1]] << (TRANSPOSE[i] * 4);
+                key = key >> 3;
+            }
+        }
+        int symZero = TRANSPOSE[zeroPos];
+        int symKey = 0;
+        for (int i = 0; i < 9; i++) {
+            if (i != symZero) {
+                symKey = (symKey << 3) | (int) ((cells >>> (i * 4)) & 0x0F);
+            }
+        }
+        return key2rank((symKey << 4) | symZero);
+    }
+    
+    /**
+     *  Returns the position of zero space of the index.
+     *  
+     *  @param index the given index of the pattern
+     *  @return position of zero space from 0 to 8
+     */
+    protected int getZeroPosition(int index) {
+        return index / SIZE_PERMUTATION;
+    }
+    
+    /**
+     *  Returns the direction of a move toward the goal state, from the best
+     *  move table of 2 bits per pattern.
+     *  
+     *  @param index the given index of the pattern
+     *  @return Direction of a move toward the goal state, NONE if it is the goal state
+     */
+    protected Direction getBestMove(int index) {
+        if (getPDvalue(index) == 0) {
+            return Direction.NONE;
+        }
+        return DIRECTIONS[bestMove(index)];
+    }
+    
+    // returns the value of direction of the best move from the tables in use
+    private int bestMove(int index) {
+        if (reduced != null) {
+            return reduced.getBestMove(index);
+        }
+        return tables.getBestMove(index);
+    }
+    
+    /**
+     *  Returns the moves of the index to the goal state, packed in 2 bits 
+     *  per move (the value of direction) from the lowest bits.  The number
+     *  of moves is the pattern value of the index.  Each move is read from 
+     *  the best move table, then follow the link.
+     *  
+     *  @param index the given index of the pattern
+     *  @return moves of the index to the goal state packed in a long
+     */
+    protected long getSolution(int index) {
+        long packed = 0;
+        int value = getPDvalue(index);
+        for (int step = 0; step < value; step++) {
+            int move = bestMove(index);
+            packed |= (long) move << (step * 2);
+            index = getLink(index, DIRECTIONS[move]);
+        }
+        return packed;
+    }
+    
+    /**
+     *  Returns the number of bytes of the tables in use, the links are not
+     *  included in LINKLESS layout.
+     *  
+     *  @return number of bytes of the tables in use
+     */
+    protected long getTableSize() {
+        if (reduced != null) {
+            return reduced.getTableSize();
+        }
+        return tables.getTableSize();
+    }
+    
+    /**
+     *  Returns the tables of the pattern database.
+     *  
+     *  @return the PatternTables of the pattern database, null in SYMMETRY storage
+     */
+    protected PatternTables getTables() {
+        return tables;
+    }
+    
     /**
      *  Generate the 8puzzle pattern database.
+     *  
+     *  @return the PatternTables generated
      */
-    protected void genPattern() {
-        keyMap = new HashMap<Integer, Integer>(); 
-        keys = new int[SIZE_COMBO];
-        links = new int[SIZE_COMBO][4];
-        for (int i = 0; i < SIZE_COMBO; i++) {
-            Arrays.fill(links[i], -1);
-        }
-        patternValue = new byte[SIZE_COMBO];
+    protected PatternTables genPattern() {
+        int[] links = new int[SIZE_COMBO * 4];
+        Arrays.fill(links, -1);
+        byte[] patternValue = new byte[SIZE_COMBO];
+        Arrays.fill(patternValue, (byte) -1);
+        // index of patterns in the order of scanned
+        int[] queue = new int[SIZE_COMBO];
               
-        int initKey = combo2key(initCombo);
+        int initIdx = key2rank(combo2key(initCombo));
         int ctKeyIdx = 0;
-        keys[ctKeyIdx] = initKey;
-        keyMap.put(initKey, ctKeyIdx++);
+        queue[ctKeyIdx++] = initIdx;
               
         byte moves = 0;
               
-        patternValue[0] = 0;
+        patternValue[initIdx] = 0;
         int top = 0, top2 = 0, end = 1, end2 = 1;
         System.out.println("Screen full pattern : 1 2 3");
         System.out.println("                      4 5 6");
@@ -222,82 +874,23 @@ public class PatternDatabase {
             top2 = end2;
                      
             for (int i = top; i < end; i++) { 
-                int zero = keys[i] & 0x000F;
-                int key = keys[i] >> 4;
-            
-                // space Right, tile left
-                if (zero % 3 < 2) {
-                    int nextKey = (key << 4) | (zero + 1);
-                    if (keyMap.containsKey(nextKey)) {
-                        links[i][Direction.RIGHT.getValue()] = keyMap.get(nextKey);
-                    } else {
-                        int nextKeyIdx = ctKeyIdx++;
-                        keys[nextKeyIdx] = nextKey;
-                        keyMap.put(nextKey, nextKeyIdx);
-                        links[i][Direction.RIGHT.getValue()] = nextKeyIdx;
-                        patternValue[nextKeyIdx] = moves;
-                        end2++;
+                int idx = queue[i];
+                
+                for (Direction dir : DIRECTIONS) {
+                    int nextIdx = computeLink(idx, dir);
+                    if (nextIdx == -1) {
+                        continue;
                     }
-                }
-                                   
-                // space down, tile up
-                if (zero < 6) {
-                    int base = key >> ((8 - zero) * 3);
-                    int leftover = key & PARTIAL[5 - zero];
-                    int self = (key >> ((5 - zero) * 3)) & PARTIAL[1];
-                    int rotKey = (key >> ((6 - zero) * 3)) & PARTIAL[2];
-                    
-                    int nextKey = (((((((base << 3) | self) << 6) | rotKey) << ((5 - zero) * 3)) 
-                            | leftover) << 4) | (zero + 3);
-                    if (keyMap.containsKey(nextKey)) {
-                        links[i][Direction.DOWN.getValue()] = keyMap.get(nextKey);
-                    } else {
-                        int nextKeyIdx = ctKeyIdx++;
-                        keys[nextKeyIdx] = nextKey;
-                        keyMap.put(nextKey, nextKeyIdx);
-                        links[i][Direction.DOWN.getValue()] = nextKeyIdx;
-                        patternValue[nextKeyIdx] = moves;
-                        end2++;
-                    }
-                }
-                                   
-                // space left, tile right
-                if (zero % 3 > 0) {
-                    int nextKey = (key << 4) | (zero - 1);
-                    if (keyMap.containsKey(nextKey)) {
-                        links[i][Direction.LEFT.getValue()] = keyMap.get(nextKey);
-                    } else {
-                        int nextKeyIdx = ctKeyIdx++;
-                        keys[nextKeyIdx] = nextKey;
-                        keyMap.put(nextKey, nextKeyIdx);
-                        links[i][Direction.LEFT.getValue()] = nextKeyIdx;
-                        patternValue[nextKeyIdx] = moves;
-                        end2++;
-                    }                            
-                }
-                                   
-                // space up, tile down 
-                if (zero > 2) {
-                    int base = key >> ((11 - zero) * 3);
-                    int leftover = key & PARTIAL[8 - zero];
-                    int self = (key >> ((10 - zero) * 3)) & PARTIAL[1];
-                    int rotKey = (key >> ((8 - zero) * 3)) & PARTIAL[2];
-                                          
-                    int nextKey = (((((((base << 6) | rotKey) << 3) | self) << ((8 - zero) * 3))
-                            | leftover) << 4) | (zero - 3);
-                    if (keyMap.containsKey(nextKey)) {
-                        links[i][Direction.UP.getValue()] = keyMap.get(nextKey);
-                    } else {
-                        int nextKeyIdx = ctKeyIdx++;
-                        keys[nextKeyIdx] = nextKey;
-                        keyMap.put(nextKey, nextKeyIdx);
-                        links[i][Direction.UP.getValue()] = nextKeyIdx;
-                        patternValue[nextKeyIdx] = moves;
+                    links[idx * 4 + dir.getValue()] = nextIdx;
+                    if (patternValue[nextIdx] == -1) {
+                        queue[ctKeyIdx++] = nextIdx;
+                        patternValue[nextIdx] = moves;
                         end2++;
                     }
                 }
             }
             if ((end2 ^ top2) != 0) {
+                progressDepth = moves;
                 System.out.println("moves : " + moves + "\tcount : " + (end2 - top2) 
                         + "\tscanned : " + ctKeyIdx + "\t end at : " + stopwatch.currentTime());
             } else {
@@ -306,6 +899,63 @@ public class PatternDatabase {
             }
         }
         System.out.println("PD8Combo - generate data set completed");       
+        return new PatternTables(ByteBuffer.wrap(patternValue), IntBuffer.wrap(links));
+    }
+       
+    /**
+     *  Generate the 8puzzle pattern database with breadth first search on all
+     *  processors, the pattern values and links are identical to genPattern.
+     *  The links are not generated in LINKLESS layout.
+     *  
+     *  @return the PatternTables generated
+     */
+    protected PatternTables genPatternParallel() {
+        return genTablesParallel(linkLayout == LinkLayout.FLAT);
+    }
+    
+    private static PatternTables genTablesParallel(boolean withLinks) {
+        StateSpace space = new StateSpace() {
+            public int size() {
+                return SIZE_COMBO;
+            }
+            
+            public int degree() {
+                return DIRECTIONS.length;
+            }
+            
+            public int neighbor(int state, int move) {
+                return computeLink(state, DIRECTIONS[move]);
+            }
+        };
+        
+        Stopwatch stopwatch = new Stopwatch();
+        ParallelBreadthFirstSearch search = new ParallelBreadthFirstSearch(space);
+        search.setLayerListener(depth -> progressDepth = depth);
+        byte[] patternValue = search.search(key2rank(combo2key(initCombo)));
+        IntBuffer links = null;
+        if (withLinks) {
+            int[] table = new int[SIZE_COMBO * 4];
+            IntStream.range(0, SIZE_COMBO).parallel().forEach(idx -> {
+                for (Direction dir : DIRECTIONS) {
+                    table[idx * 4 + dir.getValue()] = computeLink(idx, dir);
+                }
+            });
+            links = IntBuffer.wrap(table);
+        }
+        ByteBuffer values = ByteBuffer.wrap(patternValue);
+        LongBuffer bestMoves = PatternTables.genBestMoves(values, 
+                (idx, dir) -> computeLink(idx, DIRECTIONS[dir]));
+        
+        int[] counts = search.getLayerCounts();
+        int scanned = 0;
+        for (int moves = 0; moves < counts.length; moves++) {
+            scanned += counts[moves];
+            System.out.println("moves : " + moves + "\tcount : " + counts[moves] 
+                    + "\tscanned : " + scanned);
+        }
+        System.out.println("PD8Combo - generate data set in parallel completed : " 
+                + stopwatch.currentTime() + "s");       
+        return new PatternTables(values, links, null, null, bestMoves);
     }
        
     /**
@@ -315,6 +965,15 @@ public class PatternDatabase {
      */
     public static void main(String[] args) {
         PatternDatabase pd = new PatternDatabase();
-        System.out.println(pd.getPDvalue(0));
+        System.out.println(pd.getPDvalue(pd.getKeyIndex(initCombo)));
+        
+        // verify the parallel generator against the serial generator
+        PatternTables serial = pd.genPattern();
+        PatternTables parallel = pd.genPatternParallel();
+        if (serial.equals(parallel) && parallel.equals(pd.getTables())) {
+            System.out.println("PD8Combo - parallel generation identical to serial");
+        } else {
+            System.out.println("PD8Combo - parallel generation differs from serial");
+        }
     }
 }
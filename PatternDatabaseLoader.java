@@ -0,0 +1,155 @@
+package mwong.myprojects.eightpuzzle;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import mwong.myprojects.utilities.Stopwatch;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac PatternDatabaseLoader.java
+ *  Execution:   java PatternDatabaseLoader
+ *  Dependencies: PatternDatabase.java, LoadingStage.java, Stopwatch.java
+ *
+ *  PatternDatabaseLoader load (or generate) the pattern database on a
+ *  background thread, the caller may continue and check the progress, wait
+ *  with a timeout or fail fast while the pattern database is warming up.
+ *
+ ****************************************************************************/
+
+public class PatternDatabaseLoader {
+    private static CompletableFuture<PatternDatabase> future;
+
+    // not instantiable
+    private PatternDatabaseLoader() { }
+
+    /**
+     * Start loading the pattern database on a background thread if not
+     * started yet.  Every call returns the same future.
+     *
+     * @return the CompletableFuture of the pattern database
+     */
+    public static synchronized CompletableFuture<PatternDatabase> warmUp() {
+        if (future == null) {
+            CompletableFuture<PatternDatabase> warming = new CompletableFuture<PatternDatabase>();
+            Thread thread = new Thread(() -> {
+                try {
+                    warming.complete(new PatternDatabase());
+                } catch (Throwable ex) {
+                    warming.completeExceptionally(ex);
+                }
+            }, "pattern-database-warmup");
+            thread.setDaemon(true);
+            thread.start();
+            future = warming;
+        }
+        return future;
+    }
+
+    /**
+     * Returns the boolean represent the pattern database is ready to use.
+     *
+     * @return boolean represent the pattern database is ready to use
+     */
+    public static boolean isReady() {
+        CompletableFuture<PatternDatabase> warming = current();
+        return warming != null && warming.isDone() && !warming.isCompletedExceptionally();
+    }
+
+    /**
+     * Returns the stage of the pattern database.
+     *
+     * @return the LoadingStage of the pattern database
+     */
+    public static LoadingStage getStage() {
+        return PatternDatabase.getStage();
+    }
+
+    /**
+     * Returns a string of the progress, the bytes verified while loading or
+     * the depth of completed layer while generating.
+     *
+     * @return a string of the progress
+     */
+    public static String getProgress() {
+        LoadingStage stage = PatternDatabase.getStage();
+        CompletableFuture<PatternDatabase> warming = current();
+        if (warming != null && warming.isCompletedExceptionally()) {
+            return "FAILED";
+        }
+        switch (stage) {
+        case LOADING:
+            return stage + " " + PatternDatabase.getProgressBytes() + "/"
+                    + PatternDatabase.getFileSize() + " bytes";
+        case GENERATING:
+            return stage + " depth " + PatternDatabase.getProgressDepth();
+        default:
+            return stage.toString();
+        }
+    }
+
+    /**
+     * Returns the pattern database, wait up to the given time if it is
+     * warming up.  Start the warm up if not started yet.
+     *
+     * @param timeout the given maximum time to wait
+     * @param unit the given TimeUnit of the timeout
+     * @return the pattern database
+     * @throws TimeoutException if the pattern database is not ready in time
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public static PatternDatabase await(long timeout, TimeUnit unit)
+            throws TimeoutException, InterruptedException {
+        try {
+            return warmUp().get(timeout, unit);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("pattern database failed to load", ex.getCause());
+        }
+    }
+
+    /**
+     * Returns the pattern database if it is ready; fail fast while warming up.
+     *
+     * @return the pattern database
+     * @throws IllegalStateException if the pattern database is not ready
+     */
+    public static PatternDatabase getIfReady() {
+        if (!isReady()) {
+            throw new IllegalStateException("pattern database is not ready : " + getProgress());
+        }
+        return current().join();
+    }
+
+    private static synchronized CompletableFuture<PatternDatabase> current() {
+        return future;
+    }
+
+    /**
+     *  test client warm up the pattern database and report the progress.
+     *
+     *  @param args main function standard arguments
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Stopwatch stopwatch = new Stopwatch();
+        warmUp();
+        while (!isReady()) {
+            System.out.println(stopwatch.currentTime() + "s\t" + getProgress());
+            try {
+                getIfReady();
+            } catch (IllegalStateException ex) {
+                System.out.println("fail fast : " + ex.getMessage());
+            }
+            try {
+                await(100, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                continue;
+            }
+        }
+        System.out.println(stopwatch.currentTime() + "s\t" + getProgress());
+        System.out.println("goal value : " + getIfReady().getPDvalue(161280));
+    }
+}
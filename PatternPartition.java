@@ -0,0 +1,52 @@
+package mwong.myprojects.fifteenpuzzle;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac PatternPartition.java
+ *
+ *  Enum PatternPartition of disjoint tile groups for 15 puzzle additive 
+ *  pattern database
+ *
+ ****************************************************************************/
+
+/**
+ *  Partition of 15 tiles that can be used.
+ *  <li>{@link #PD663}</li>
+ *  <li>{@link #PD78}</li>
+ */
+public enum PatternPartition {
+    /**
+     *  Two groups of 6 tiles and a group of 3 tiles.
+     */
+    PD663(new byte[][] {{1, 5, 6, 9, 10, 13}, {7, 8, 11, 12, 14, 15}, {2, 3, 4}}),
+    /**
+     *  A group of 7 tiles and a group of 8 tiles.
+     */
+    PD78(new byte[][] {{1, 2, 3, 4, 5, 6, 7}, {8, 9, 10, 11, 12, 13, 14, 15}});
+    
+    private final byte[][] groups;
+    PatternPartition(byte[][] groups) { 
+        this.groups = groups; 
+    }
+    
+    /**
+     *  Returns the number of groups of the partition.
+     *  
+     *  @return number of groups of the partition
+     */
+    public int size() { 
+        return groups.length; 
+    }
+    
+    /**
+     *  Returns the tiles of the given group.
+     *  
+     *  @param group the given group number
+     *  @return a byte array of tiles of the given group
+     */
+    public byte[] getGroup(int group) { 
+        return groups[group].clone(); 
+    }
+}
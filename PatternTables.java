@@ -0,0 +1,332 @@
+package mwong.myprojects.eightpuzzle;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Objects;
+import java.util.function.IntBinaryOperator;
+import java.util.stream.IntStream;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac PatternTables.java
+ *  Dependencies: Direction.java
+ *
+ *  A immutable snapshot of the tables of 8puzzle pattern database, the
+ *  pattern values, the links of 4 directions and the best move of each
+ *  index, and the index of patterns ordered by depth.  The links are null
+ *  if the links are computed from the permutation rank.  All fields
+ *  are final and the tables are read only, once constructed it can be shared
+ *  by any number of threads without locks.
+ *
+ ****************************************************************************/
+
+public final class PatternTables {
+    // the maximum depth is 31, start of each depth and the end of last depth
+    static final int DEPTH_SLOTS = 33;
+    private final ByteBuffer patternValue;
+    // links store 4 directions of each index in a row (index * 4 + direction),
+    // null if not stored
+    private final IntBuffer links;
+    // direction of a move toward the goal state, 2 bits per index, 32 in a long
+    private final LongBuffer bestMoves;
+    // index of patterns ordered by depth then index, the patterns of depth d
+    // are from depthStart[d] to depthStart[d + 1] - 1
+    private final IntBuffer depthStart;
+    private final IntBuffer statesByDepth;
+
+    /**
+     * Initializes the snapshot with read only views of the given tables, the
+     * given tables must not be modified afterward.  The index by depth is
+     * derived from the pattern values.
+     *
+     * @param patternValue the given pattern value of each index
+     * @param links the given links of 4 directions of each index
+     */
+    PatternTables(ByteBuffer patternValue, IntBuffer links) {
+        this(patternValue, links, null, null);
+    }
+
+    /**
+     * Initializes the snapshot with read only views of the given tables and
+     * index by depth, the given tables must not be modified afterward.
+     *
+     * @param patternValue the given pattern value of each index
+     * @param links the given links of 4 directions of each index
+     * @param depthStart the given start of each depth, null to derive
+     * @param statesByDepth the given index of patterns ordered by depth, null to derive
+     */
+    PatternTables(ByteBuffer patternValue, IntBuffer links, IntBuffer depthStart,
+            IntBuffer statesByDepth) {
+        this(patternValue, links, depthStart, statesByDepth, null);
+    }
+
+    /**
+     * Initializes the snapshot with read only views of the given tables, index
+     * by depth and best moves, the given tables must not be modified afterward.
+     *
+     * @param patternValue the given pattern value of each index
+     * @param links the given links of 4 directions of each index, null if not stored
+     * @param depthStart the given start of each depth, null to derive
+     * @param statesByDepth the given index of patterns ordered by depth, null to derive
+     * @param bestMoves the given best move of each index in 2 bits, null to derive
+     *        from the links
+     */
+    PatternTables(ByteBuffer patternValue, IntBuffer links, IntBuffer depthStart,
+            IntBuffer statesByDepth, LongBuffer bestMoves) {
+        this.patternValue = patternValue.asReadOnlyBuffer();
+        this.links = (links == null) ? null : links.asReadOnlyBuffer();
+        if (depthStart == null) {
+            int[] start = new int[DEPTH_SLOTS];
+            int[] states = new int[patternValue.capacity()];
+            sortByDepth(start, states);
+            depthStart = IntBuffer.wrap(start);
+            statesByDepth = IntBuffer.wrap(states);
+        }
+        this.depthStart = depthStart.asReadOnlyBuffer();
+        this.statesByDepth = statesByDepth.asReadOnlyBuffer();
+        if (bestMoves == null) {
+            IntBuffer link = this.links;
+            bestMoves = genBestMoves(this.patternValue, (idx, dir) -> link.get(idx * 4 + dir));
+        }
+        this.bestMoves = bestMoves.asReadOnlyBuffer();
+    }
+
+    /**
+     *  Returns the best move table of the pattern values, the link of the index
+     *  and the value of direction is given by the link function.
+     *
+     *  @param patternValue the given pattern value of each index
+     *  @param link the given function of index and value of direction to the
+     *         index after the move, -1 if not possible
+     *  @return the LongBuffer of the best move of each index in 2 bits
+     */
+    static LongBuffer genBestMoves(ByteBuffer patternValue, IntBinaryOperator link) {
+        long[] moves = new long[getBestMoveWords(patternValue.capacity())];
+        IntStream.range(0, moves.length).parallel().forEach(word -> {
+            long packed = 0;
+            int end = Math.min((word + 1) << 5, patternValue.capacity());
+            for (int idx = word << 5; idx < end; idx++) {
+                packed |= (long) findBestMove(patternValue, link, idx) << ((idx & 31) << 1);
+            }
+            moves[word] = packed;
+        });
+        return LongBuffer.wrap(moves);
+    }
+
+    /**
+     *  Returns a snapshot of the same tables without the links, the tables
+     *  are shared and not copied.
+     *
+     *  @return the PatternTables without the links
+     */
+    PatternTables withoutLinks() {
+        if (links == null) {
+            return this;
+        }
+        return new PatternTables(patternValue, null, depthStart, statesByDepth, bestMoves);
+    }
+
+    /**
+     *  Returns the number of longs of the best move table of the number of patterns.
+     *
+     *  @param size the given number of patterns
+     *  @return number of longs of the best move table
+     */
+    static int getBestMoveWords(int size) {
+        return (size + 31) >>> 5;
+    }
+    
+    // counting sort of the patterns by depth, the patterns of the same depth
+    // keep the order of index, serial and parallel generation have the same order
+    private void sortByDepth(int[] start, int[] states) {
+        for (int idx = 0; idx < states.length; idx++) {
+            start[patternValue.get(idx) + 1]++;
+        }
+        for (int depth = 1; depth < start.length; depth++) {
+            start[depth] += start[depth - 1];
+        }
+        int[] next = start.clone();
+        for (int idx = 0; idx < states.length; idx++) {
+            states[next[patternValue.get(idx)]++] = idx;
+        }
+    }
+
+    // returns the value of the first direction to a smaller pattern value,
+    // in the order of right, down, left and up; 0 for the goal state
+    private static int findBestMove(ByteBuffer patternValue, IntBinaryOperator link, 
+            int index) {
+        int value = patternValue.get(index);
+        for (int dir = 0; dir < 4; dir++) {
+            int next = link.applyAsInt(index, dir);
+            if (next != -1 && patternValue.get(next) < value) {
+                return dir;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     *  Returns the pattern value of the index.
+     *
+     *  @param index the given index of the pattern
+     *  @return number of the pattern value of the index
+     */
+    int getPDvalue(int index) {
+        return patternValue.get(index);
+    }
+
+    /**
+     *  Returns the index of pattern after the move.
+     *
+     *  @param index the given index of the pattern
+     *  @param dir the given direction of the move
+     *  @return index of pattern after the move
+     */
+    int getLink(int index, Direction dir) {
+        return links.get(index * 4 + dir.getValue());
+    }
+
+    /**
+     *  Returns the value of the direction of a move toward the goal state,
+     *  undefined for the goal state.
+     *
+     *  @param index the given index of the pattern
+     *  @return value of the direction of a move toward the goal state
+     */
+    int getBestMove(int index) {
+        return (int) (bestMoves.get(index >>> 5) >>> ((index & 31) << 1)) & 3;
+    }
+
+    /**
+     *  Returns the number of bytes of the best move table.
+     *
+     *  @return number of bytes of the best move table
+     */
+    long getBestMoveSize() {
+        return bestMoves.capacity() * 8L;
+    }
+
+    /**
+     *  Returns the number of bytes of all tables of the snapshot.
+     *
+     *  @return number of bytes of all tables of the snapshot
+     */
+    long getTableSize() {
+        long linkSize = (links == null) ? 0 : links.capacity() * 4L;
+        return patternValue.capacity() + linkSize + depthStart.capacity() * 4L
+                + statesByDepth.capacity() * 4L + getBestMoveSize();
+    }
+
+    /**
+     *  Returns the largest depth of the patterns.
+     *
+     *  @return the largest depth of the patterns
+     */
+    int getMaxDepth() {
+        int depth = DEPTH_SLOTS - 2;
+        while (depth > 0 && getDepthCount(depth) == 0) {
+            depth--;
+        }
+        return depth;
+    }
+
+    /**
+     *  Returns the number of patterns of the depth.
+     *
+     *  @param depth the given depth from 0 to 31
+     *  @return number of patterns of the depth
+     */
+    int getDepthCount(int depth) {
+        return depthStart.get(depth + 1) - depthStart.get(depth);
+    }
+
+    /**
+     *  Returns the index of the n-th pattern of the depth, in order of index.
+     *
+     *  @param depth the given depth from 0 to 31
+     *  @param n the given position from 0 to getDepthCount(depth) - 1
+     *  @return index of the n-th pattern of the depth
+     */
+    int getStateAtDepth(int depth, int n) {
+        return statesByDepth.get(depthStart.get(depth) + n);
+    }
+
+    /**
+     *  Returns a read only view of the start of each depth.
+     *
+     *  @return a read only IntBuffer of the start of each depth
+     */
+    IntBuffer getDepthStarts() {
+        return depthStart.duplicate();
+    }
+
+    /**
+     *  Returns a read only view of the index of patterns ordered by depth.
+     *
+     *  @return a read only IntBuffer of the index of patterns ordered by depth
+     */
+    IntBuffer getStatesByDepth() {
+        return statesByDepth.duplicate();
+    }
+
+    /**
+     *  Returns a read only view of the best move table.
+     *
+     *  @return a read only LongBuffer of the best move table
+     */
+    LongBuffer getBestMoves() {
+        return bestMoves.duplicate();
+    }
+
+    /**
+     *  Returns a read only view of the pattern values.
+     *
+     *  @return a read only ByteBuffer of the pattern values
+     */
+    ByteBuffer getPatternValues() {
+        return patternValue.duplicate();
+    }
+
+    /**
+     *  Returns a read only view of the links.
+     *
+     *  @return a read only IntBuffer of the links, null if not stored
+     */
+    IntBuffer getLinks() {
+        return (links == null) ? null : links.duplicate();
+    }
+
+    /**
+     *  Returns the boolean represent both snapshots have identical tables.
+     *
+     *  @param other the given object to compare
+     *  @return boolean represent both snapshots have identical tables
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof PatternTables)) {
+            return false;
+        }
+        PatternTables that = (PatternTables) other;
+        return patternValue.equals(that.patternValue) && Objects.equals(links, that.links)
+                && depthStart.equals(that.depthStart) && statesByDepth.equals(that.statesByDepth)
+                && bestMoves.equals(that.bestMoves);
+    }
+
+    /**
+     *  Returns the hash code of the tables.
+     *
+     *  @return the hash code of the tables
+     */
+    @Override
+    public int hashCode() {
+        return (31 * patternValue.hashCode() + Objects.hashCode(links)) * 31
+                + bestMoves.hashCode();
+    }
+}
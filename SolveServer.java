@@ -0,0 +1,407 @@
+package mwong.myprojects.eightpuzzle;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac SolveServer.java
+ *  Execution:   java SolveServer [port]
+ *  Dependencies: BatchSolver.java, Board.java, PatternDatabaseLoader.java
+ *
+ *  SolveServer is a local http service to solve 8puzzle boards, it listens
+ *  on the loopback address only.  Each request runs on its own thread,
+ *  a virtual thread if the runtime supports it.  Small concurrent requests
+ *  are coalesced into a batch before solved on the shared pattern database.
+ *
+ *  POST /solve
+ *    text body : one board per line, 9 digits of tiles from top row then
+ *                left to right, with or without spaces or commas between,
+ *                e.g. 123456780; any other character is rejected with 400
+ *                response one line per board : moves and the moves encoded
+ *                as R, D, L, U, moves is -1 if no solution
+ *    binary body (Content-Type: application/octet-stream) : 9 bytes of tiles
+ *                per board, response 9 bytes per board : the number of moves
+ *                (-1 if no solution) then the packed moves in a little endian
+ *                long of 2 bits per move from the lowest bits
+ *    a body larger than 4 MiB is rejected with status 413, status 503 if the
+ *    boards are not solved in 30 seconds or the server is stopping, status
+ *    500 with the cause if the pattern database failed to load
+ *  GET /health
+ *    READY, or status 503 with the progress of the pattern database, status
+ *    500 with the cause if it failed to load
+ *
+ ****************************************************************************/
+
+public class SolveServer {
+    private static final int SIZE = 9;
+    private static final String BINARY = "application/octet-stream";
+    // requests up to this number of boards are coalesced with other requests
+    private static final int BATCH_BOARDS = 64;
+    // maximum number of boards of a coalesced batch
+    private static final int MAX_BATCH = 4096;
+    // maximum number of bytes of a request body
+    private static final int MAX_BODY = 1 << 22;
+    // maximum time a request waits for its boards solved
+    private static final long TIMEOUT_SECONDS = 30;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final CompletableFuture<BatchSolver> batchSolver;
+    private final BlockingQueue<Pending> pending;
+    private final Thread batcher;
+
+    // boards of a request waiting for the batch thread
+    private static final class Pending {
+        private final Board[] boards;
+        private final CompletableFuture<BatchSolver.Result[]> results;
+
+        Pending(Board[] boards) {
+            this.boards = boards;
+            this.results = new CompletableFuture<BatchSolver.Result[]>();
+        }
+    }
+
+    /**
+     * Initializes the SolveServer on the loopback address with the given port,
+     * the pattern database warm up in background.
+     *
+     * @param port the given port number, 0 for any free port
+     * @throws IOException if the server cannot bind to the port
+     */
+    public SolveServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                1024);
+        executor = newThreadPerTaskExecutor();
+        batchSolver = PatternDatabaseLoader.warmUp().thenApply(pd -> new BatchSolver());
+        pending = new LinkedBlockingQueue<Pending>();
+        batcher = new Thread(this::coalesce, "solve-server-batcher");
+        batcher.setDaemon(true);
+        server.createContext("/solve", this::handleSolve);
+        server.createContext("/health", this::handleHealth);
+        server.setExecutor(executor);
+    }
+
+    // returns a virtual thread per task executor if supported,
+    // otherwise a cached thread pool of daemon threads
+    private static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "solve-server-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Start accepting requests.
+     */
+    public void start() {
+        batcher.start();
+        server.start();
+    }
+
+    /**
+     * Stop accepting requests and shut down the worker threads.
+     */
+    public void stop() {
+        server.stop(0);
+        batcher.interrupt();
+        executor.shutdown();
+        batchSolver.thenAccept(BatchSolver::shutdown);
+    }
+
+    /**
+     * Returns the port number the server listens on.
+     *
+     * @return the port number the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        if (batchSolver.isCompletedExceptionally()) {
+            respondFailed(exchange);
+        } else if (batchSolver.isDone()) {
+            respond(exchange, 200, "text/plain", "READY\n".getBytes(StandardCharsets.US_ASCII));
+        } else {
+            respond(exchange, 503, "text/plain", (PatternDatabaseLoader.getProgress() + "\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "text/plain", "POST only\n".getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        if (batchSolver.isCompletedExceptionally()) {
+            respondFailed(exchange);
+            return;
+        }
+        BatchSolver solver = batchSolver.getNow(null);
+        if (solver == null) {
+            respond(exchange, 503, "text/plain", ("pattern database is not ready : "
+                    + PatternDatabaseLoader.getProgress() + "\n").getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+
+        String type = exchange.getRequestHeaders().getFirst("Content-Type");
+        boolean binary = type != null && type.startsWith(BINARY);
+        byte[] body = readBody(exchange);
+        if (body == null) {
+            respond(exchange, 413, "text/plain", ("body larger than " + MAX_BODY + " bytes\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        Board[] boards;
+        try {
+            boards = binary ? parseBinary(body) : parseText(body);
+        } catch (IllegalArgumentException ex) {
+            respond(exchange, 400, "text/plain", (ex.getMessage() + "\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+
+        BatchSolver.Result[] results;
+        try {
+            results = solve(solver, boards);
+        } catch (TimeoutException | RejectedExecutionException ex) {
+            respond(exchange, 503, "text/plain", "solver is not available\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            return;
+        } catch (InterruptedException | ExecutionException ex) {
+            int status = (ex.getCause() instanceof RejectedExecutionException) ? 503 : 500;
+            respond(exchange, status, "text/plain", "solver failed\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        if (binary) {
+            respond(exchange, 200, BINARY, encodeBinary(results));
+        } else {
+            respond(exchange, 200, "text/plain", encodeText(results));
+        }
+    }
+
+    // respond 500 with the cause of the failed load of the pattern database
+    private void respondFailed(HttpExchange exchange) throws IOException {
+        Throwable cause;
+        try {
+            batchSolver.join();
+            cause = null;
+        } catch (CompletionException ex) {
+            cause = (ex.getCause() != null) ? ex.getCause() : ex;
+        }
+        respond(exchange, 500, "text/plain", ("pattern database failed to load : " + cause
+                + "\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // a small request wait for the batch thread up to the timeout, a large
+    // request is a batch itself
+    private BatchSolver.Result[] solve(BatchSolver solver, Board[] boards)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (boards.length > BATCH_BOARDS) {
+            return solver.solveAll(boards);
+        }
+        Pending request = new Pending(boards);
+        pending.add(request);
+        try {
+            return request.results.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException | InterruptedException ex) {
+            pending.remove(request);
+            throw ex;
+        }
+    }
+
+    // the batch thread, take all waiting requests, solve them in a single batch
+    // then complete each request with its own results; a failed batch fails
+    // its own requests only, the thread keeps serving until interrupted
+    private void coalesce() {
+        BatchSolver solver;
+        try {
+            solver = batchSolver.get();
+        } catch (InterruptedException | ExecutionException ex) {
+            failPending(ex);
+            return;
+        }
+        List<Pending> batch = new ArrayList<Pending>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(pending.take());
+            } catch (InterruptedException ex) {
+                break;
+            }
+            int count = batch.get(0).boards.length;
+            Pending next;
+            while (count < MAX_BATCH && (next = pending.poll()) != null) {
+                batch.add(next);
+                count += next.boards.length;
+            }
+
+            try {
+                Board[] boards = new Board[count];
+                int pos = 0;
+                for (Pending request : batch) {
+                    System.arraycopy(request.boards, 0, boards, pos, request.boards.length);
+                    pos += request.boards.length;
+                }
+                BatchSolver.Result[] results = solver.solveAll(boards);
+                pos = 0;
+                for (Pending request : batch) {
+                    BatchSolver.Result[] own = new BatchSolver.Result[request.boards.length];
+                    System.arraycopy(results, pos, own, 0, own.length);
+                    pos += own.length;
+                    request.results.complete(own);
+                }
+            } catch (Throwable ex) {
+                for (Pending request : batch) {
+                    request.results.completeExceptionally(ex);
+                }
+            }
+            batch.clear();
+        }
+        failPending(new RejectedExecutionException("SolveServer is stopped"));
+    }
+
+    // complete the requests still waiting exceptionally
+    private void failPending(Throwable cause) {
+        Pending request;
+        while ((request = pending.poll()) != null) {
+            request.results.completeExceptionally(cause);
+        }
+    }
+
+    // returns the body, null if it is larger than the maximum; no more than
+    // the maximum and a byte is read whatever the size of the body
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] bytes = body.readNBytes(MAX_BODY + 1);
+            return (bytes.length > MAX_BODY) ? null : bytes;
+        }
+    }
+
+    // returns the boards of the text body, one board per line, the tiles may
+    // be separated by spaces, tabs or commas
+    private static Board[] parseText(byte[] body) {
+        List<Board> boards = new ArrayList<Board>();
+        byte[] blocks = new byte[SIZE];
+        int count = 0;
+        int line = 1;
+        for (int i = 0; i <= body.length; i++) {
+            int c = (i < body.length) ? body[i] : '\n';
+            if (c >= '0' && c <= '9') {
+                if (count == SIZE) {
+                    throw new IllegalArgumentException("line " + line + " : more than 9 tiles");
+                }
+                blocks[count++] = (byte) (c - '0');
+            } else if (c == '\n') {
+                if (count > 0) {
+                    boards.add(newBoard(blocks, count, "line " + line));
+                }
+                count = 0;
+                line++;
+            } else if (c != ' ' && c != '\t' && c != '\r' && c != ',') {
+                throw new IllegalArgumentException("line " + line + " : invalid character "
+                        + ((c >= ' ' && c < 0x7f) ? "'" + (char) c + "'" : "0x"
+                        + Integer.toHexString(c & 0xff)));
+            }
+        }
+        return boards.toArray(new Board[boards.size()]);
+    }
+
+    // returns the boards of the binary body, 9 bytes per board
+    private static Board[] parseBinary(byte[] body) {
+        if (body.length % SIZE != 0) {
+            throw new IllegalArgumentException("body length is not a multiple of 9");
+        }
+        Board[] boards = new Board[body.length / SIZE];
+        byte[] blocks = new byte[SIZE];
+        for (int i = 0; i < boards.length; i++) {
+            System.arraycopy(body, i * SIZE, blocks, 0, SIZE);
+            boards[i] = newBoard(blocks, SIZE, "board " + i);
+        }
+        return boards;
+    }
+
+    // returns the board of the tiles, the tiles must be 0 to 8 each appears once
+    private static Board newBoard(byte[] blocks, int count, String where) {
+        if (count != SIZE) {
+            throw new IllegalArgumentException(where + " : expected 9 tiles");
+        }
+        int used = 0;
+        for (byte tile : blocks) {
+            if (tile < 0 || tile >= SIZE || (used & (1 << tile)) != 0) {
+                throw new IllegalArgumentException(where + " : tiles must be 0 to 8 each once");
+            }
+            used |= 1 << tile;
+        }
+        return new Board(blocks);
+    }
+
+    private static byte[] encodeText(BatchSolver.Result[] results) {
+        StringBuilder s = new StringBuilder(results.length * 24);
+        for (BatchSolver.Result result : results) {
+            s.append(result.moves()).append(' ').append(result.encodedMoves()).append('\n');
+        }
+        return s.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] encodeBinary(BatchSolver.Result[] results) {
+        ByteBuffer buffer = ByteBuffer.allocate(results.length * SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (BatchSolver.Result result : results) {
+            buffer.put((byte) result.moves()).putLong(result.packedMoves());
+        }
+        return buffer.array();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String type, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     *  start the server on localhost with the port of first argument, 8080 by default.
+     *
+     *  @param args main function standard arguments
+     *  @throws IOException if the server cannot bind to the port
+     */
+    public static void main(String[] args) throws IOException {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : 8080;
+        SolveServer solveServer = new SolveServer(port);
+        solveServer.start();
+        System.out.println("SolveServer listening on http://localhost:" + solveServer.getPort()
+                + "/solve");
+    }
+}
@@ -12,7 +12,7 @@ import mwong.myprojects.utilities.Stopwatch;
  *
  *  Compilation: java Solver.java
  *  Execution: java Solver
- *  Dependencies : Board.java, Deque.java, Direction.java
+ *  Dependencies : Board.java, Deque.java, Direction.java, SolverMetrics.java
  *
  *  Solver is the puzzle8 (3-by-3 boards) slider puzzle solver
  *  use pattern database 
@@ -23,7 +23,7 @@ public class Solver {
     private static Scanner scanner;
     private static final int SIZE_PUZZLE = 9;
     private int steps;
-    private Deque<Direction> solutionMove;
+    private long packedMoves;
     private Board initial;
 
     /**
@@ -32,31 +32,86 @@ public class Solver {
      * @param initial the Board object
      */
     public Solver(Board initial) { 
-        solutionMove = new Deque<Direction>();
+        SolverMetrics.getInstance().recordLookup(initial.getIndex());
         if (!initial.isSolvable()) {
             steps = -1;
             return;
         }
+        long start = System.nanoTime();
         this.initial = initial;
-        if (initial.isGoal()) {
-            steps = 0;
-            return;
+        steps = minimumMoves(initial.getIndex());
+        packedMoves = packedMoves(initial.getIndex());
+        SolverMetrics.getInstance().recordLatency(System.nanoTime() - start);
+    }           
+    
+    /**
+     * Returns the pattern index of the blocks; -1 if no solution.  The blocks
+     * are 3-by-3 tiles from top row then left to right order.
+     * 
+     * @param blocks a byte array of tiles
+     * @return pattern index of the blocks; -1 if no solution
+     */
+    public static int indexOf(byte[] blocks) {
+        int index = Board.getPatterns().getKeyIndex(blocks);
+        SolverMetrics.getInstance().recordLookup(index);
+        return index;
+    }
+    
+    /**
+     * Returns the minimum number of moves of the pattern index; -1 if no solution.
+     * 
+     * @param index the given pattern index
+     * @return minimum number of moves of the pattern index; -1 if no solution
+     */
+    public static int minimumMoves(int index) {
+        if (index == -1) {
+            return -1;
         }
-        
-        Board move = initial.solutionMove(Direction.NONE);
-        Direction dir = initial.getDirection(move);
-        solutionMove.addLast(dir);
-        steps = 1;
-        Board curr = move;
-        
-        while (!curr.isGoal()) {
-            move = curr.solutionMove(dir);
-            dir = curr.getDirection(move);
-            solutionMove.addLast(dir);
-            steps++;
-            curr = move;
+        return Board.getPatterns().getPDvalue(index);
+    }
+    
+    /**
+     * Returns the moves of the pattern index to the goal state packed in a long,
+     * 2 bits per move from the lowest bits; the number of moves is minimumMoves.
+     * It works on the pattern index only and allocates no object.
+     * 
+     * @param index the given pattern index
+     * @return moves to the goal state packed in a long; 0 if no solution
+     */
+    public static long packedMoves(int index) {
+        if (index == -1) {
+            return 0;
         }
-    }           
+        PatternDatabase patterns = Board.getPatterns();
+        SolverMetrics.getInstance().recordSolve(patterns.getPDvalue(index));
+        return patterns.getSolution(index);
+    }
+    
+    /**
+     * Returns the direction of the given step of the packed moves.
+     * 
+     * @param packed the given packed moves
+     * @param step the given step from 0
+     * @return direction of the given step of the packed moves
+     */
+    public static Direction unpackDirection(long packed, int step) {
+        return Direction.fromValue((int) (packed >>> (step * 2)) & 0x03);
+    }
+    
+    /**
+     * Returns the list of direction of the packed moves.
+     * 
+     * @param packed the given packed moves
+     * @param moves the given number of moves
+     * @return a deque of direction of the packed moves
+     */
+    public static Deque<Direction> unpackMoves(long packed, int moves) {
+        Deque<Direction> directions = new Deque<Direction>();
+        for (int step = 0; step < moves; step++) {
+            directions.addLast(unpackDirection(packed, step));
+        }
+        return directions;
+    }
     
     /**
      * Returns the minimum number of moves to solve initial board; -1 if no solution.
@@ -67,6 +122,15 @@ public class Solver {
         return steps;
     }
     
+    /**
+     * Returns the list of direction of moves to the goal state.
+     * 
+     * @return an iterable of direction of moves to the goal state
+     */
+    protected Iterable<Direction> solution() { 
+        return unpackMoves(packedMoves, Math.max(steps, 0));
+    }
+    
     /**
      * Print the minimum number of moves to the goal state.
      */
@@ -78,7 +142,7 @@ public class Solver {
      * Print the list of direction of moves to the goal state.
      */
     protected void solutionList() {
-        Iterator<Direction> it = solutionMove.iterator();
+        Iterator<Direction> it = solution().iterator();
         int count = 0;
         while (it.hasNext()) {
             System.out.print((++count) + " : " + it.next() + " ");
@@ -93,7 +157,7 @@ public class Solver {
      * Print all boards of moves to the goal state.
      */
     protected void solutionDetail() {
-        Iterator<Direction> it = solutionMove.iterator();
+        Iterator<Direction> it = solution().iterator();
         int count = 0;
         System.out.println("Step : " + (count++));
         System.out.println(initial);
@@ -0,0 +1,290 @@
+package mwong.myprojects.eightpuzzle;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac SolverMetrics.java
+ *  Dependencies: SolverMetricsMBean.java
+ *
+ *  SolverMetrics collect the load time of pattern database, the number of
+ *  lookups and solves, the histogram of solution length and the latency of
+ *  a board solved.  Solver and BatchSolver.solve record the latency of each
+ *  board; BatchSolver.solveAll and BulkSolver record the mean latency of a
+ *  board of the batch once for every board of it.  Every counter is a LongAdder, threads update their own cell
+ *  without contention.  The single instance is registered to the platform
+ *  MBean server on first use.  The solve count is sampled every second by
+ *  a daemon timer, the solve rate is over the last 10 samples and a read
+ *  changes nothing.
+ *
+ ****************************************************************************/
+
+public final class SolverMetrics implements SolverMetricsMBean {
+    private static final String OBJECT_NAME = "mwong.myprojects.eightpuzzle:type=SolverMetrics";
+    private static final int MAX_MOVES = 32;
+    // latency buckets, 4 sub-buckets per power of 2 nanoseconds
+    private static final int SUB_BITS = 2;
+    private static final int BUCKETS = 64 << SUB_BITS;
+    // number of seconds of the solve rate
+    private static final int RATE_WINDOW = 10;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder unsolvable = new LongAdder();
+    private final LongAdder solves = new LongAdder();
+    private final LongAdder[] lengths = newAdders(MAX_MOVES);
+    private final LongAdder[] latency = newAdders(BUCKETS);
+    private volatile double loadTime;
+    private volatile String loadSource = "NONE";
+    // ring of the solve count and time sampled every second, guarded by this
+    private final long[] rateCount = new long[RATE_WINDOW + 1];
+    private final long[] rateTime = new long[RATE_WINDOW + 1];
+    private int rateNext;
+    private int rateSamples;
+
+    // the instance is created and registered exactly once on first use
+    private static class Holder {
+        private static final SolverMetrics INSTANCE = startRate(register(new SolverMetrics()));
+    }
+
+    // not instantiable outside
+    private SolverMetrics() { }
+
+    private static LongAdder[] newAdders(int size) {
+        LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    // register to the platform MBean server, the metrics still work if failed
+    private static SolverMetrics register(SolverMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                    new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException ex) {
+            System.err.println("SolverMetrics - register MBean failed : " + ex);
+        }
+        return metrics;
+    }
+
+    // sample the solve count every second on a daemon timer thread
+    private static SolverMetrics startRate(SolverMetrics metrics) {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "solver-metrics-rate");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(metrics::sampleRate, 0, 1, TimeUnit.SECONDS);
+        return metrics;
+    }
+
+    // add the solve count and time to the ring, the oldest sample is replaced
+    private synchronized void sampleRate() {
+        rateCount[rateNext] = solves.sum();
+        rateTime[rateNext] = System.nanoTime();
+        rateNext = (rateNext + 1) % rateCount.length;
+        rateSamples = Math.min(rateSamples + 1, rateCount.length);
+    }
+
+    /**
+     * Returns the shared SolverMetrics.
+     * 
+     * @return the shared SolverMetrics
+     */
+    public static SolverMetrics getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Record the load of pattern database.
+     * 
+     * @param source the given source, FILE or GENERATED
+     * @param seconds the given time in seconds
+     */
+    void recordLoad(String source, double seconds) {
+        loadTime = seconds;
+        loadSource = source;
+    }
+
+    /**
+     * Record a lookup of board in pattern database.
+     * 
+     * @param index the given index of the board, -1 if no solution
+     */
+    void recordLookup(int index) {
+        lookups.increment();
+        if (index == -1) {
+            unsolvable.increment();
+        }
+    }
+
+    /**
+     * Record a batch of lookups of boards in pattern database.
+     *
+     * @param count the given number of boards
+     * @param unsolvable the given number of boards of no solution
+     */
+    void recordLookups(int count, int unsolvable) {
+        lookups.add(count);
+        this.unsolvable.add(unsolvable);
+    }
+
+    /**
+     * Record a board solved with the given number of moves.
+     * 
+     * @param moves the given number of moves
+     */
+    void recordSolve(int moves) {
+        solves.increment();
+        lengths[moves].increment();
+    }
+
+    /**
+     * Record the latency of a board solved.
+     * 
+     * @param nanos the given latency in nanoseconds
+     */
+    void recordLatency(long nanos) {
+        latency[bucket(Math.max(nanos, 1))].increment();
+    }
+
+    /**
+     * Record the latency of a batch of boards solved, each board counts the
+     * mean latency of a board of the batch.
+     *
+     * @param nanos the given latency of the batch in nanoseconds
+     * @param count the given number of boards of the batch
+     */
+    void recordLatency(long nanos, int count) {
+        if (count > 0) {
+            latency[bucket(Math.max(nanos / count, 1))].add(count);
+        }
+    }
+
+    // returns the bucket of the latency, the power of 2 and the next 2 bits
+    private static int bucket(long nanos) {
+        int exp = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exp < SUB_BITS) {
+            return (int) nanos;
+        }
+        int sub = (int) (nanos >>> (exp - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+        return ((exp - SUB_BITS + 1) << SUB_BITS) | sub;
+    }
+
+    // returns the largest latency of the bucket
+    private static long upperBound(int bucket) {
+        if (bucket < (1 << SUB_BITS)) {
+            return bucket;
+        }
+        int exp = (bucket >>> SUB_BITS) + SUB_BITS - 1;
+        long sub = bucket & ((1 << SUB_BITS) - 1);
+        return ((((1L << SUB_BITS) | sub) + 1) << (exp - SUB_BITS)) - 1;
+    }
+
+    @Override
+    public double getLoadTime() {
+        return loadTime;
+    }
+
+    @Override
+    public String getLoadSource() {
+        return loadSource;
+    }
+
+    @Override
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+
+    @Override
+    public long getUnsolvableCount() {
+        return unsolvable.sum();
+    }
+
+    @Override
+    public long getSolveCount() {
+        return solves.sum();
+    }
+
+    @Override
+    public synchronized double getSolvesPerSecond() {
+        if (rateSamples < 2) {
+            return 0;
+        }
+        int newest = (rateNext + rateCount.length - 1) % rateCount.length;
+        int oldest = (rateSamples < rateCount.length) ? 0 : rateNext;
+        return (rateCount[newest] - rateCount[oldest]) * 1e9
+                / Math.max(rateTime[newest] - rateTime[oldest], 1);
+    }
+
+    @Override
+    public long[] getSolutionLengthHistogram() {
+        long[] histogram = new long[MAX_MOVES];
+        for (int i = 0; i < MAX_MOVES; i++) {
+            histogram[i] = lengths[i].sum();
+        }
+        return histogram;
+    }
+
+    @Override
+    public long getLatency50thPercentile() {
+        return percentile(0.50);
+    }
+
+    @Override
+    public long getLatency90thPercentile() {
+        return percentile(0.90);
+    }
+
+    @Override
+    public long getLatency99thPercentile() {
+        return percentile(0.99);
+    }
+
+    // returns the upper bound of the bucket of the given percentile
+    private long percentile(double fraction) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = latency[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    @Override
+    public synchronized void reset() {
+        lookups.reset();
+        unsolvable.reset();
+        solves.reset();
+        for (LongAdder adder : lengths) {
+            adder.reset();
+        }
+        for (LongAdder adder : latency) {
+            adder.reset();
+        }
+        rateNext = 0;
+        rateSamples = 0;
+    }
+}
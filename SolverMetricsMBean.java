@@ -0,0 +1,90 @@
+package mwong.myprojects.eightpuzzle;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac SolverMetricsMBean.java
+ *
+ *  An interface of the management attributes of the pattern database and
+ *  the solvers, registered as mwong.myprojects.eightpuzzle:type=SolverMetrics
+ *
+ ****************************************************************************/
+
+public interface SolverMetricsMBean {
+    /**
+     * Returns the time to load or generate the pattern database in seconds.
+     * 
+     * @return time to load or generate the pattern database in seconds
+     */
+    double getLoadTime();
+
+    /**
+     * Returns the source of the pattern database, FILE or GENERATED; NONE if not loaded.
+     * 
+     * @return the source of the pattern database
+     */
+    String getLoadSource();
+
+    /**
+     * Returns the number of boards looked up in the pattern database.
+     * 
+     * @return number of boards looked up in the pattern database
+     */
+    long getLookupCount();
+
+    /**
+     * Returns the number of boards looked up without solution.
+     * 
+     * @return number of boards looked up without solution
+     */
+    long getUnsolvableCount();
+
+    /**
+     * Returns the number of boards solved.
+     * 
+     * @return number of boards solved
+     */
+    long getSolveCount();
+
+    /**
+     * Returns the number of boards solved per second of the last 10 seconds,
+     * the same to every reader.
+     * 
+     * @return number of boards solved per second of the last 10 seconds
+     */
+    double getSolvesPerSecond();
+
+    /**
+     * Returns the number of boards solved of each solution length, 0 to 31 moves.
+     * 
+     * @return number of boards solved of each solution length
+     */
+    long[] getSolutionLengthHistogram();
+
+    /**
+     * Returns the median latency of a board solved in nanoseconds.
+     * 
+     * @return the median latency of a board solved in nanoseconds
+     */
+    long getLatency50thPercentile();
+
+    /**
+     * Returns the 90th percentile latency of a board solved in nanoseconds.
+     * 
+     * @return the 90th percentile latency of a board solved in nanoseconds
+     */
+    long getLatency90thPercentile();
+
+    /**
+     * Returns the 99th percentile latency of a board solved in nanoseconds.
+     * 
+     * @return the 99th percentile latency of a board solved in nanoseconds
+     */
+    long getLatency99thPercentile();
+
+    /**
+     * Reset the counters, histograms and latencies, the load time and source are kept.
+     */
+    void reset();
+}
@@ -0,0 +1,57 @@
+package mwong.myprojects.utilities;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation:  javac StateSpace.java
+ *
+ * An interface of state space that every state is indexed by a rank from 0
+ * to size - 1, and each state has a fixed number of moves to other states.
+ *
+ ****************************************************************************/
+
+public interface StateSpace {
+    /**
+     * Returns the number of states in this state space.
+     * 
+     * @return the number of states in this state space
+     */
+    int size();
+    
+    /**
+     * Returns the number of possible moves of each state.
+     * 
+     * @return the number of possible moves of each state
+     */
+    int degree();
+    
+    /**
+     * Returns the rank of the state after the move, -1 if the move is not possible.
+     * 
+     * @param state the given rank of the state
+     * @param move the given move from 0 to degree - 1
+     * @return the rank of the state after the move, -1 if the move is not possible
+     */
+    int neighbor(int state, int move);
+    
+    /**
+     * Store the rank of every possible state after a move in the given array,
+     * in the order of moves.  A state space may override it to share the
+     * work of all moves.
+     * 
+     * @param state the given rank of the state
+     * @param next the given array of at least degree elements
+     * @return the number of states stored
+     */
+    default int neighbors(int state, int[] next) {
+        int count = 0;
+        for (int move = 0; move < degree(); move++) {
+            int rank = neighbor(state, move);
+            if (rank != -1) {
+                next[count++] = rank;
+            }
+        }
+        return count;
+    }
+}
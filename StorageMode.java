@@ -0,0 +1,28 @@
+package mwong.myprojects.eightpuzzle;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac StorageMode.java
+ *
+ *  Enum StorageMode for the tables of pattern database
+ *
+ ****************************************************************************/
+
+/**
+ *  Storage of the tables of pattern database that can be used.
+ *  <li>{@link #FULL}</li>
+ *  <li>{@link #SYMMETRY}</li>
+ */
+public enum StorageMode {
+    /**
+     *  The tables of all patterns, in place of the mapped data file.
+     */
+    FULL,
+    /**
+     *  The tables of canonical patterns only, a pattern not stored use its
+     *  symmetry pattern.
+     */
+    SYMMETRY;
+}
@@ -0,0 +1,305 @@
+package mwong.myprojects.eightpuzzle;
+
+import mwong.myprojects.utilities.Stopwatch;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac SymmetryPatternDatabase.java
+ *  Execution:   java SymmetryPatternDatabase
+ *  Dependencies: PatternDatabase.java, PatternTables.java, Direction.java,
+ *                Stopwatch.java
+ *
+ *  A immutable data type of 8puzzle pattern database only store the canonical
+ *  patterns.  A pattern and its reflection across the main diagonal (with
+ *  tiles relabeled) have the same pattern value, the smaller index of the
+ *  two is canonical.  The canonical patterns are indexed by a bitmap with the
+ *  count of canonical patterns before each word.  It is the storage of
+ *  PatternDatabase in SYMMETRY mode, derived from the full tables once and
+ *  no reference of the full tables is kept.
+ *
+ ****************************************************************************/
+
+public class SymmetryPatternDatabase {
+    private static final int SIZE_COMBO = 181440;
+    private static final Direction[] DIRECTIONS = {Direction.RIGHT, Direction.DOWN,
+        Direction.LEFT, Direction.UP};
+
+    private final long[] canonical;
+    private final int[] rankBefore;
+    private final byte[] patternValue;
+    // links of canonical patterns to the index of the next pattern, 4 in a row,
+    // null if the full tables have no links
+    private final int[] links;
+    // best move of canonical patterns, 2 bits each, 32 in a long
+    private final long[] bestMoves;
+    // canonical patterns ordered by depth, the patterns of their own symmetry
+    // first then the others, each in order of index; depthStart[d] to
+    // depthStart[d + 1] - 1 of depth d, the first selfCount[d] are their own
+    // symmetry
+    private final int[] depthStart;
+    private final int[] selfCount;
+    private final int[] statesByDepth;
+
+    /**
+     * Initializes the symmetry reduced pattern database from the tables of the
+     * full pattern database, the links are kept if the given tables have links.
+     *
+     * @param tables the given PatternTables of the full pattern database
+     */
+    public SymmetryPatternDatabase(PatternTables tables) {
+        Stopwatch stopwatch = new Stopwatch();
+        canonical = new long[(SIZE_COMBO + 63) >>> 6];
+        rankBefore = new int[canonical.length];
+        int count = 0;
+        for (int idx = 0; idx < SIZE_COMBO; idx++) {
+            if (idx % 64 == 0) {
+                rankBefore[idx >>> 6] = count;
+            }
+            if (idx <= PatternDatabase.symmetryIndex(idx)) {
+                canonical[idx >>> 6] |= 1L << idx;
+                count++;
+            }
+        }
+
+        boolean withLinks = tables.getLinks() != null;
+        patternValue = new byte[count];
+        links = withLinks ? new int[count * 4] : null;
+        bestMoves = new long[PatternTables.getBestMoveWords(count)];
+        for (int idx = 0; idx < SIZE_COMBO; idx++) {
+            if (isCanonical(idx)) {
+                int compact = compactIndex(idx);
+                patternValue[compact] = (byte) tables.getPDvalue(idx);
+                bestMoves[compact >>> 5] |= (long) tables.getBestMove(idx)
+                        << ((compact & 31) << 1);
+                if (withLinks) {
+                    for (Direction dir : DIRECTIONS) {
+                        links[compact * 4 + dir.getValue()] = tables.getLink(idx, dir);
+                    }
+                }
+            }
+        }
+
+        depthStart = new int[PatternTables.DEPTH_SLOTS];
+        selfCount = new int[PatternTables.DEPTH_SLOTS - 1];
+        statesByDepth = new int[count];
+        sortByDepth();
+        System.out.println("Symmetry Pattern Database 8puzzle - " + count
+                + " canonical patterns : " + stopwatch.currentTime() + "s");
+    }
+
+    // counting sort of the canonical patterns by depth, the patterns of their
+    // own symmetry first
+    private void sortByDepth() {
+        for (int idx = 0; idx < SIZE_COMBO; idx++) {
+            if (isCanonical(idx)) {
+                int depth = patternValue[compactIndex(idx)];
+                depthStart[depth + 1]++;
+                if (PatternDatabase.symmetryIndex(idx) == idx) {
+                    selfCount[depth]++;
+                }
+            }
+        }
+        for (int depth = 1; depth < depthStart.length; depth++) {
+            depthStart[depth] += depthStart[depth - 1];
+        }
+        int[] nextSelf = new int[selfCount.length];
+        int[] nextPair = new int[selfCount.length];
+        for (int depth = 0; depth < selfCount.length; depth++) {
+            nextSelf[depth] = depthStart[depth];
+            nextPair[depth] = depthStart[depth] + selfCount[depth];
+        }
+        for (int idx = 0; idx < SIZE_COMBO; idx++) {
+            if (isCanonical(idx)) {
+                int depth = patternValue[compactIndex(idx)];
+                if (PatternDatabase.symmetryIndex(idx) == idx) {
+                    statesByDepth[nextSelf[depth]++] = idx;
+                } else {
+                    statesByDepth[nextPair[depth]++] = idx;
+                }
+            }
+        }
+    }
+
+    // returns the position of the canonical pattern in the compact tables
+    private int compactIndex(int index) {
+        return rankBefore[index >>> 6]
+                + Long.bitCount(canonical[index >>> 6] & ((1L << index) - 1));
+    }
+
+    /**
+     *  Returns the boolean represent the index is a canonical pattern.
+     *
+     *  @param index the given index of the pattern
+     *  @return boolean represent the index is a canonical pattern
+     */
+    protected boolean isCanonical(int index) {
+        return (canonical[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     *  Returns the index of compress pattern.
+     *
+     *  @param combo the given sequence of 8 tiles with space
+     *  @return index of compress pattern, -1 if no such pattern
+     */
+    protected int getKeyIndex(byte[] combo) {
+        return PatternDatabase.keyIndex(combo);
+    }
+
+    /**
+     *  Returns the index of pattern after the move.  A pattern not stored
+     *  follows the link of its symmetry pattern in the symmetry direction,
+     *  then reflects back.  The links must be kept.
+     *
+     *  @param index the given index of the pattern
+     *  @param dir the given direction of the move
+     *  @return index of pattern after the move
+     */
+    protected int getLink(int index, Direction dir) {
+        if (isCanonical(index)) {
+            return links[compactIndex(index) * 4 + dir.getValue()];
+        }
+        int symIdx = PatternDatabase.symmetryIndex(index);
+        int next = links[compactIndex(symIdx) * 4 + dir.symmetryDirection().getValue()];
+        if (next == -1) {
+            return -1;
+        }
+        return PatternDatabase.symmetryIndex(next);
+    }
+
+    /**
+     *  Returns the pattern value of the index.
+     *
+     *  @param index the given index of the pattern
+     *  @return number of the pattern value of the index
+     */
+    protected int getPDvalue(int index) {
+        if (isCanonical(index)) {
+            return patternValue[compactIndex(index)];
+        }
+        return patternValue[compactIndex(PatternDatabase.symmetryIndex(index))];
+    }
+
+    /**
+     *  Returns the value of the direction of a move toward the goal state,
+     *  the symmetry direction of the move of the symmetry pattern if not
+     *  stored; undefined for the goal state.
+     *
+     *  @param index the given index of the pattern
+     *  @return value of the direction of a move toward the goal state
+     */
+    protected int getBestMove(int index) {
+        if (isCanonical(index)) {
+            return storedMove(compactIndex(index));
+        }
+        int move = storedMove(compactIndex(PatternDatabase.symmetryIndex(index)));
+        return Direction.fromValue(move).symmetryDirection().getValue();
+    }
+
+    private int storedMove(int compact) {
+        return (int) (bestMoves[compact >>> 5] >>> ((compact & 31) << 1)) & 3;
+    }
+
+    /**
+     *  Returns the largest pattern value of all patterns.
+     *
+     *  @return the largest pattern value of all patterns
+     */
+    protected int getMaxDepth() {
+        int depth = selfCount.length - 1;
+        while (depth > 0 && depthStart[depth + 1] == depthStart[depth]) {
+            depth--;
+        }
+        return depth;
+    }
+
+    /**
+     *  Returns the number of patterns of the pattern value, each canonical
+     *  pattern counts its symmetry pattern as well.
+     *
+     *  @param depth the given pattern value from 0 to 31
+     *  @return number of patterns of the pattern value
+     */
+    protected int getDepthCount(int depth) {
+        return (depthStart[depth + 1] - depthStart[depth]) * 2 - selfCount[depth];
+    }
+
+    /**
+     *  Returns the index of the n-th pattern of the pattern value; the
+     *  canonical patterns in order of depth index, then the symmetry
+     *  patterns of those not of their own symmetry.
+     *
+     *  @param depth the given pattern value from 0 to 31
+     *  @param n the given position from 0 to getDepthCount(depth) - 1
+     *  @return index of the n-th pattern of the pattern value
+     */
+    protected int getIndexAtDepth(int depth, int n) {
+        int stored = depthStart[depth + 1] - depthStart[depth];
+        if (n < stored) {
+            return statesByDepth[depthStart[depth] + n];
+        }
+        return PatternDatabase.symmetryIndex(statesByDepth[depthStart[depth]
+                + selfCount[depth] + n - stored]);
+    }
+
+    /**
+     *  Returns the number of bytes of the tables.
+     *
+     *  @return number of bytes of the tables
+     */
+    protected long getTableSize() {
+        long linkSize = (links == null) ? 0 : links.length * 4L;
+        return canonical.length * 8L + rankBefore.length * 4L + patternValue.length
+                + linkSize + bestMoves.length * 8L + depthStart.length * 4L
+                + selfCount.length * 4L + statesByDepth.length * 4L;
+    }
+
+    /**
+     *  test client compare the pattern database of symmetry storage with the
+     *  full pattern database.
+     *
+     *  @param args main function standard arguments
+     */
+    public static void main(String[] args) {
+        PatternDatabase pd = new PatternDatabase();
+        PatternDatabase spd = new PatternDatabase(LinkLayout.FLAT, StorageMode.SYMMETRY);
+        for (int idx = 0; idx < SIZE_COMBO; idx++) {
+            if (spd.getPDvalue(idx) != pd.getPDvalue(idx)) {
+                System.out.println("pattern value differs at " + idx);
+                return;
+            }
+            for (Direction dir : DIRECTIONS) {
+                if (spd.getLink(idx, dir) != pd.getLink(idx, dir)) {
+                    System.out.println("link differs at " + idx + " " + dir);
+                    return;
+                }
+            }
+            Direction move = spd.getBestMove(idx);
+            if (move != Direction.NONE
+                    && pd.getPDvalue(pd.getLink(idx, move)) != pd.getPDvalue(idx) - 1) {
+                System.out.println("best move is not toward the goal at " + idx);
+                return;
+            }
+        }
+        boolean[] seen = new boolean[SIZE_COMBO];
+        for (int depth = 0; depth <= pd.getMaxDepth(); depth++) {
+            if (spd.getDepthCount(depth) != pd.getDepthCount(depth)) {
+                System.out.println("number of patterns differs at depth " + depth);
+                return;
+            }
+            for (int n = 0; n < spd.getDepthCount(depth); n++) {
+                int idx = spd.getIndexAtDepth(depth, n);
+                if (seen[idx] || pd.getPDvalue(idx) != depth) {
+                    System.out.println("pattern of depth " + depth + " differs at " + n);
+                    return;
+                }
+                seen[idx] = true;
+            }
+        }
+        System.out.println("Symmetry Pattern Database 8puzzle - identical to full pattern database");
+        System.out.println("full tables : " + pd.getTableSize()
+                + " bytes\tsymmetry tables : " + spd.getTableSize() + " bytes");
+    }
+}
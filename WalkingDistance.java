@@ -0,0 +1,250 @@
+package mwong.myprojects.fifteenpuzzle;
+
+import java.util.Arrays;
+
+import mwong.myprojects.eightpuzzle.Direction;
+import mwong.myprojects.utilities.Stopwatch;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac WalkingDistance.java
+ *  Execution:   java WalkingDistance
+ *  Dependencies: Heuristic.java, Direction.java, Stopwatch.java
+ *
+ *  A immutable data type of walking distance heuristic of n-by-n board up
+ *  to 4-by-4.  The vertical pattern only counts the tiles of each goal row
+ *  in each row and the row of space, a vertical move of the space swaps it
+ *  with a tile of the row above or below.  The minimum number of vertical
+ *  moves of every pattern is generated by its own breadth first search from
+ *  the goal pattern.  The horizontal pattern counts the tiles of each goal
+ *  column in each column, it is the same table by symmetry.  The walking
+ *  distance is the sum of both.
+ *
+ ****************************************************************************/
+
+public class WalkingDistance implements Heuristic {
+    private static final int MAX_N = 4;
+    // bits of the count of tiles of a goal line in a line
+    private static final int BITS = 3;
+    private static final long EMPTY = -1;
+
+    private final int n;
+    // shift of the line of space in the pattern
+    private final int spaceShift;
+    // open addressing table of the minimum number of moves of each pattern
+    private long[] patterns;
+    private byte[] moves;
+    private int states;
+    private int maxMoves;
+
+    /**
+     * Initializes the walking distance of n-by-n board.
+     *
+     * @param n the given size of the row and column of the board
+     */
+    public WalkingDistance(int n) {
+        if (n < 2 || n > MAX_N) {
+            throw new IllegalArgumentException("board of " + n + "x" + n + " is not supported");
+        }
+        this.n = n;
+        spaceShift = n * n * BITS;
+        patterns = new long[1 << 8];
+        moves = new byte[patterns.length];
+        Arrays.fill(patterns, EMPTY);
+        genPattern();
+    }
+
+    // returns the pattern of a tile of the goal line in the line
+    private long tile(int line, int goal) {
+        return 1L << ((line * n + goal) * BITS);
+    }
+
+    // returns the number of tiles of the goal line in the line of the pattern
+    private int count(long pattern, int line, int goal) {
+        return (int) (pattern >>> ((line * n + goal) * BITS)) & ((1 << BITS) - 1);
+    }
+
+    // breadth first search from the goal pattern, n tiles of own goal line in
+    // each line except n - 1 tiles and the space in the last line
+    private void genPattern() {
+        long goal = (long) (n - 1) << spaceShift;
+        for (int line = 0; line < n; line++) {
+            goal += tile(line, line) * ((line == n - 1) ? n - 1 : n);
+        }
+        long[] queue = new long[patterns.length];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = goal;
+        insert(goal, 0);
+        while (head < tail) {
+            long pattern = queue[head++];
+            int value = getMoves(pattern);
+            maxMoves = value;
+            int space = (int) (pattern >>> spaceShift);
+            long tiles = pattern & ((1L << spaceShift) - 1);
+            for (int next = space - 1; next <= space + 1; next += 2) {
+                if (next < 0 || next >= n) {
+                    continue;
+                }
+                // a tile of each goal line in the next line may swap with the space
+                for (int line = 0; line < n; line++) {
+                    if (count(pattern, next, line) == 0) {
+                        continue;
+                    }
+                    long moved = (tiles - tile(next, line) + tile(space, line))
+                            | ((long) next << spaceShift);
+                    if (getMoves(moved) == -1) {
+                        insert(moved, value + 1);
+                        if (tail == queue.length) {
+                            queue = Arrays.copyOf(queue, tail * 2);
+                        }
+                        queue[tail++] = moved;
+                    }
+                }
+            }
+        }
+    }
+
+    // returns the slot of the pattern in the table, or the empty slot to insert
+    private int slot(long pattern) {
+        int mask = patterns.length - 1;
+        long hash = pattern * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash >>> 40) & mask;
+        while (patterns[slot] != EMPTY && patterns[slot] != pattern) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // insert the pattern with its number of moves, keep the table at most half full
+    private void insert(long pattern, int value) {
+        if (states * 2 >= patterns.length) {
+            long[] oldPatterns = patterns;
+            byte[] oldMoves = moves;
+            patterns = new long[oldPatterns.length * 2];
+            moves = new byte[patterns.length];
+            Arrays.fill(patterns, EMPTY);
+            for (int i = 0; i < oldPatterns.length; i++) {
+                if (oldPatterns[i] != EMPTY) {
+                    int slot = slot(oldPatterns[i]);
+                    patterns[slot] = oldPatterns[i];
+                    moves[slot] = oldMoves[i];
+                }
+            }
+        }
+        int slot = slot(pattern);
+        patterns[slot] = pattern;
+        moves[slot] = (byte) value;
+        states++;
+    }
+
+    // returns the number of moves of the pattern, -1 if not found
+    private int getMoves(long pattern) {
+        int slot = slot(pattern);
+        return (patterns[slot] == EMPTY) ? -1 : moves[slot];
+    }
+
+    /**
+     * Returns the number of patterns of each direction.
+     *
+     * @return number of patterns of each direction
+     */
+    public int getStates() {
+        return states;
+    }
+
+    /**
+     * Returns the maximum number of moves of each direction.
+     *
+     * @return maximum number of moves of each direction
+     */
+    public int getMaxMoves() {
+        return maxMoves;
+    }
+
+    // returns the vertical pattern of the tiles
+    private long rowPattern(byte[] tiles) {
+        long pattern = 0;
+        for (int pos = 0; pos < tiles.length; pos++) {
+            if (tiles[pos] == 0) {
+                pattern |= (long) (pos / n) << spaceShift;
+            } else {
+                pattern += tile(pos / n, (tiles[pos] - 1) / n);
+            }
+        }
+        return pattern;
+    }
+
+    // returns the horizontal pattern of the tiles
+    private long colPattern(byte[] tiles) {
+        long pattern = 0;
+        for (int pos = 0; pos < tiles.length; pos++) {
+            if (tiles[pos] == 0) {
+                pattern |= (long) (pos % n) << spaceShift;
+            } else {
+                pattern += tile(pos % n, (tiles[pos] - 1) % n);
+            }
+        }
+        return pattern;
+    }
+
+    /**
+     * Returns the sum of the vertical and horizontal walking distance.
+     *
+     * @param tiles a byte array of tiles
+     * @return the sum of the vertical and horizontal walking distance
+     */
+    public int estimate(byte[] tiles) {
+        return getMoves(rowPattern(tiles)) + getMoves(colPattern(tiles));
+    }
+
+    /**
+     * Returns the walking distance after a tile moved, only the pattern of
+     * the direction of the move changes.  The pattern before the move is the
+     * pattern after the move with the tile and the space swapped back.  The
+     * pattern after the move is counted from the tiles again, no pattern is
+     * kept between moves; it is a recomputation of one direction, not a
+     * delta.
+     *
+     * @param tiles a byte array of tiles after the move
+     * @param value the estimate before the move
+     * @param tile the moved tile
+     * @param from the position of the tile before the move
+     * @param to the position of the tile after the move
+     * @param dir the Direction of the space moved
+     * @return the walking distance after the move
+     */
+    public int update(byte[] tiles, int value, int tile, int from, int to, Direction dir) {
+        long after;
+        long before;
+        if (dir == Direction.LEFT || dir == Direction.RIGHT) {
+            int goal = (tile - 1) % n;
+            after = colPattern(tiles);
+            before = after - tile(to % n, goal) + tile(from % n, goal)
+                    - ((long) (from % n) << spaceShift) + ((long) (to % n) << spaceShift);
+        } else {
+            int goal = (tile - 1) / n;
+            after = rowPattern(tiles);
+            before = after - tile(to / n, goal) + tile(from / n, goal)
+                    - ((long) (from / n) << spaceShift) + ((long) (to / n) << spaceShift);
+        }
+        return value - getMoves(before) + getMoves(after);
+    }
+
+    /**
+     *  test client print the number of patterns and the maximum number of moves
+     *  of each n-by-n board.
+     *
+     *  @param args main function standard arguments
+     */
+    public static void main(String[] args) {
+        for (int n = 2; n <= MAX_N; n++) {
+            Stopwatch stopwatch = new Stopwatch();
+            WalkingDistance wd = new WalkingDistance(n);
+            System.out.println(n + "x" + n + " : " + wd.getStates() + " patterns, max moves "
+                    + wd.getMaxMoves() + " : " + stopwatch.currentTime() + "s");
+        }
+    }
+}
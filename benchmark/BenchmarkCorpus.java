@@ -0,0 +1,74 @@
+package mwong.myprojects.eightpuzzle;
+
+import java.util.Random;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac BenchmarkCorpus.java
+ *  Dependencies: PatternDatabase.java, Board.java
+ *
+ *  A fixed seeded corpus of 8puzzle boards shared by the benchmarks
+ *
+ ****************************************************************************/
+
+public final class BenchmarkCorpus {
+    /**
+     *  Number of boards in the corpus.
+     */
+    public static final int SIZE = 1024;
+    private static final int SIZE_COMBO = 181440;
+    private static final long SEED = 20160101L;
+    
+    private BenchmarkCorpus() {
+    }
+    
+    /**
+     *  Returns the pattern indices of the corpus, the same on every run.
+     *  
+     *  @return an integer array of pattern indices
+     */
+    public static int[] indices() {
+        Random random = new Random(SEED);
+        int[] indices = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            indices[i] = random.nextInt(SIZE_COMBO);
+        }
+        return indices;
+    }
+    
+    /**
+     *  Returns the tiles of each board of the corpus.
+     *  
+     *  @param pd the given pattern database
+     *  @return a 2 dimension byte array of tiles of each board
+     */
+    public static byte[][] blocks(PatternDatabase pd) {
+        int[] indices = indices();
+        byte[][] blocks = new byte[SIZE][];
+        for (int i = 0; i < SIZE; i++) {
+            int[] combo = pd.idx2combo(indices[i]);
+            blocks[i] = new byte[combo.length];
+            for (int j = 0; j < combo.length; j++) {
+                blocks[i][j] = (byte) combo[j];
+            }
+        }
+        return blocks;
+    }
+    
+    /**
+     *  Returns the boards of the corpus.
+     *  
+     *  @param pd the given pattern database
+     *  @return an array of boards
+     */
+    public static Board[] boards(PatternDatabase pd) {
+        byte[][] blocks = blocks(pd);
+        Board[] boards = new Board[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            boards[i] = new Board(blocks[i]);
+        }
+        return boards;
+    }
+}
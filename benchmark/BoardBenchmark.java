@@ -0,0 +1,76 @@
+package mwong.myprojects.eightpuzzle;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac -cp jmh-core.jar BoardBenchmark.java
+ *  Execution:   java -cp jmh-core.jar org.openjdk.jmh.Main BoardBenchmark
+ *  Dependencies: Board.java, BenchmarkCorpus.java
+ *
+ *  JMH benchmark of the neighbor boards and the best move of a board
+ *
+ ****************************************************************************/
+
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BoardBenchmark {
+    private Board[] boards;
+    
+    /**
+     *  Load the pattern database and the corpus.
+     */
+    @Setup
+    public void setup() {
+        boards = BenchmarkCorpus.boards(new PatternDatabase());
+    }
+    
+    /**
+     *  Benchmark of all neighbor boards.
+     *  
+     *  @param blackhole the given Blackhole of JMH
+     */
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public void neighbors(Blackhole blackhole) {
+        for (Board board : boards) {
+            for (Board neighbor : board.neighbors(Direction.NONE)) {
+                blackhole.consume(neighbor);
+            }
+        }
+    }
+    
+    /**
+     *  Benchmark of the best move toward to the goal state.
+     *  
+     *  @param blackhole the given Blackhole of JMH
+     */
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public void solutionMove(Blackhole blackhole) {
+        for (Board board : boards) {
+            if (!board.isGoal()) {
+                blackhole.consume(board.solutionMove(Direction.NONE));
+            }
+        }
+    }
+}
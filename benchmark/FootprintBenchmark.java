@@ -0,0 +1,122 @@
+package mwong.myprojects.eightpuzzle;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac -cp jmh-core.jar FootprintBenchmark.java
+ *  Execution:   java -cp jmh-core.jar org.openjdk.jmh.Main FootprintBenchmark
+ *  Dependencies: PatternDatabase.java, LinkLayout.java
+ *
+ *  JMH report of the retained memory of pattern database of each storage,
+ *  the tables generated on heap or mapped from the data file, with each 
+ *  layout of links.  Every storage runs in its own fork.
+ *
+ ****************************************************************************/
+
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+@Fork(1)
+@Warmup(iterations = 1, time = 1)
+@Measurement(iterations = 3, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FootprintBenchmark {
+    /**
+     *  Storage of the tables, generated on heap or mapped from the data file.
+     */
+    @Param({"HEAP", "MAPPED"})
+    public String storage;
+    /**
+     *  Layout of links of the pattern database.
+     */
+    @Param({"FLAT", "LINKLESS"})
+    public LinkLayout layout;
+    /**
+     *  Bytes of heap retained by the pattern database.
+     */
+    public long heapBytes;
+    /**
+     *  Bytes of memory mapped by the pattern database.
+     */
+    public long mappedBytes;
+    private PatternDatabase pd;
+    private int index;
+    
+    /**
+     *  Build the tables of the storage and measure the retained memory.
+     *  
+     *  @throws Exception if the data file is missing or invalid
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        // the shared instance make sure the data file exists
+        new PatternDatabase(layout);
+        long heapBefore = usedHeap();
+        long mappedBefore = usedMapped();
+        PatternDatabase shared = new PatternDatabase(layout);
+        if ("HEAP".equals(storage)) {
+            pd = new PatternDatabase(shared.genPatternParallel(), layout);
+        } else {
+            pd = new PatternDatabase(shared.loadFile(), layout);
+        }
+        // touch every page of the tables used by this layout
+        for (int i = 0; i < 181440; i++) {
+            pd.getPDvalue(i);
+            pd.getLink(i, Direction.UP);
+        }
+        heapBytes = usedHeap() - heapBefore;
+        mappedBytes = usedMapped() - mappedBefore;
+    }
+    
+    // returns the used heap after garbage collection
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+    
+    // returns the memory mapped by the file channels
+    private static long usedMapped() {
+        for (BufferPoolMXBean pool 
+                : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("mapped".equals(pool.getName())) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     *  Returns a lookup of the storage, the retained memory are reported 
+     *  as the secondary results.
+     *  
+     *  @return the pattern value and link of the next pattern index
+     */
+    @Benchmark
+    public int lookup() {
+        index = (index + 1) % 181440;
+        return pd.getPDvalue(index) + pd.getLink(index, Direction.UP);
+    }
+}
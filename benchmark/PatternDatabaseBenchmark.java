@@ -0,0 +1,174 @@
+package mwong.myprojects.eightpuzzle;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac -cp jmh-core.jar PatternDatabaseBenchmark.java
+ *  Execution:   java -cp jmh-core.jar org.openjdk.jmh.Main PatternDatabaseBenchmark
+ *  Dependencies: PatternDatabase.java, LinkLayout.java, BenchmarkCorpus.java
+ *
+ *  JMH benchmark of pattern database generation, data file and lookups,
+ *  the save writes in a temporary directory, not the data file in use
+ *
+ ****************************************************************************/
+
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PatternDatabaseBenchmark {
+    private static final Direction[] DIRECTIONS = {Direction.RIGHT, Direction.DOWN, 
+        Direction.LEFT, Direction.UP};
+    
+    /**
+     *  Layout of links of the pattern database.
+     */
+    @Param({"FLAT", "LINKLESS"})
+    public LinkLayout layout;
+    private PatternDatabase pd;
+    private int[] indices;
+    private byte[][] blocks;
+    private Path directory;
+    
+    /**
+     *  Load the pattern database and the corpus, create the temporary directory
+     *  of the saved file.
+     *  
+     *  @throws IOException if the temporary directory cannot be created
+     */
+    @Setup
+    public void setup() throws IOException {
+        pd = new PatternDatabase(layout);
+        indices = BenchmarkCorpus.indices();
+        blocks = BenchmarkCorpus.blocks(pd);
+        directory = Files.createTempDirectory("pd8");
+    }
+    
+    /**
+     *  Delete the temporary directory and the saved file.
+     *  
+     *  @throws IOException if the temporary directory cannot be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(directory.resolve("pd8.db"));
+        Files.deleteIfExists(directory);
+    }
+    
+    /**
+     *  Benchmark of the serial generator.
+     *  
+     *  @return the tables generated
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public PatternTables genPattern() {
+        return pd.genPattern();
+    }
+    
+    /**
+     *  Benchmark of the parallel generator.
+     *  
+     *  @return the tables generated
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public PatternTables genPatternParallel() {
+        return pd.genPatternParallel();
+    }
+    
+    /**
+     *  Benchmark of loading the data file.
+     *  
+     *  @return the tables loaded
+     *  @throws Exception if the data file is missing or invalid
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public PatternTables loadFile() throws Exception {
+        return pd.loadFile();
+    }
+    
+    /**
+     *  Benchmark of saving the data file in the temporary directory.
+     *  
+     *  @throws Exception if the file cannot be written
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void saveFile() throws Exception {
+        pd.saveFile(directory.resolve("pd8.db"));
+    }
+    
+    /**
+     *  Benchmark of the index of the tiles.
+     *  
+     *  @param blackhole the given Blackhole of JMH
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public void getKeyIndex(Blackhole blackhole) {
+        for (byte[] combo : blocks) {
+            blackhole.consume(pd.getKeyIndex(combo));
+        }
+    }
+    
+    /**
+     *  Benchmark of the links of 4 directions.
+     *  
+     *  @param blackhole the given Blackhole of JMH
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE * 4)
+    public void getLink(Blackhole blackhole) {
+        for (int index : indices) {
+            for (Direction dir : DIRECTIONS) {
+                blackhole.consume(pd.getLink(index, dir));
+            }
+        }
+    }
+    
+    /**
+     *  Benchmark of the pattern values.
+     *  
+     *  @param blackhole the given Blackhole of JMH
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public void getPDvalue(Blackhole blackhole) {
+        for (int index : indices) {
+            blackhole.consume(pd.getPDvalue(index));
+        }
+    }
+}
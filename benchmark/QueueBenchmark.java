@@ -0,0 +1,169 @@
+package mwong.myprojects.eightpuzzle;
+
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import mwong.myprojects.utilities.ByteDeque;
+import mwong.myprojects.utilities.Deque;
+import mwong.myprojects.utilities.IntDeque;
+import mwong.myprojects.utilities.IntRandomizedQueue;
+import mwong.myprojects.utilities.RandomizedQueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac -cp jmh-core.jar QueueBenchmark.java
+ *  Execution:   java -cp jmh-core.jar org.openjdk.jmh.Main QueueBenchmark -prof gc
+ *  Dependencies: Deque.java, RandomizedQueue.java, ByteDeque.java, IntDeque.java,
+ *                IntRandomizedQueue.java
+ *
+ *  JMH benchmark of the generic deque and randomized queue against their
+ *  primitive counterparts, a solution of moves (up to 31 directions) and
+ *  the 4 neighbors of a board are filled then drained on each operation.
+ *  The primitive queues are reused as the steady state of a solver.
+ *
+ ****************************************************************************/
+
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QueueBenchmark {
+    private static final int MOVES = 31;
+    private static final int NEIGHBORS = 4;
+    private static final int ROUNDS = 256;
+    private static final Direction[] DIRECTIONS = {Direction.RIGHT, Direction.DOWN,
+        Direction.LEFT, Direction.UP};
+    private ByteDeque byteDeque;
+    private IntDeque intDeque;
+    private IntRandomizedQueue intRandomizedQueue;
+
+    /**
+     *  Initializes the reusable primitive queues.
+     */
+    @Setup
+    public void setup() {
+        byteDeque = new ByteDeque(MOVES);
+        intDeque = new IntDeque(MOVES);
+        intRandomizedQueue = new IntRandomizedQueue(new SplittableRandom(20160101L));
+    }
+
+    /**
+     *  Benchmark of a new generic deque of the directions of a solution,
+     *  then iterate in order.
+     *
+     *  @param blackhole the given Blackhole of JMH
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROUNDS)
+    public void deque(Blackhole blackhole) {
+        for (int round = 0; round < ROUNDS; round++) {
+            Deque<Direction> moves = new Deque<Direction>();
+            for (int i = 0; i < MOVES; i++) {
+                moves.addLast(DIRECTIONS[(round + i) & 3]);
+            }
+            for (Iterator<Direction> itr = moves.iterator(); itr.hasNext();) {
+                blackhole.consume(itr.next());
+            }
+        }
+    }
+
+    /**
+     *  Benchmark of the reused byte deque of the values of directions of a
+     *  solution, then iterate in order.
+     *
+     *  @param blackhole the given Blackhole of JMH
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROUNDS)
+    public void byteDeque(Blackhole blackhole) {
+        for (int round = 0; round < ROUNDS; round++) {
+            byteDeque.clear();
+            for (int i = 0; i < MOVES; i++) {
+                byteDeque.addLast((byte) ((round + i) & 3));
+            }
+            for (int i = 0; i < byteDeque.size(); i++) {
+                blackhole.consume(byteDeque.get(i));
+            }
+        }
+    }
+
+    /**
+     *  Benchmark of the reused int deque as a first in first out queue of
+     *  pattern indices.
+     *
+     *  @param blackhole the given Blackhole of JMH
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROUNDS)
+    public void intDeque(Blackhole blackhole) {
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < MOVES; i++) {
+                intDeque.addLast(round * MOVES + i);
+            }
+            for (PrimitiveIterator.OfInt itr = intDeque.iterator(); itr.hasNext();) {
+                blackhole.consume(itr.nextInt());
+            }
+            while (!intDeque.isEmpty()) {
+                blackhole.consume(intDeque.removeFirst());
+            }
+        }
+    }
+
+    /**
+     *  Benchmark of a new generic randomized queue of the neighbors of a board,
+     *  then dequeue all.
+     *
+     *  @param blackhole the given Blackhole of JMH
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROUNDS)
+    public void randomizedQueue(Blackhole blackhole) {
+        for (int round = 0; round < ROUNDS; round++) {
+            RandomizedQueue<Integer> neighbors = new RandomizedQueue<Integer>();
+            for (int i = 0; i < NEIGHBORS; i++) {
+                neighbors.enqueue(round * NEIGHBORS + i);
+            }
+            while (!neighbors.isEmpty()) {
+                blackhole.consume(neighbors.dequeue());
+            }
+        }
+    }
+
+    /**
+     *  Benchmark of the reused int randomized queue of the indices of the
+     *  neighbors of a board, then dequeue all.
+     *
+     *  @param blackhole the given Blackhole of JMH
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROUNDS)
+    public void intRandomizedQueue(Blackhole blackhole) {
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < NEIGHBORS; i++) {
+                intRandomizedQueue.enqueue(round * NEIGHBORS + i);
+            }
+            while (!intRandomizedQueue.isEmpty()) {
+                blackhole.consume(intRandomizedQueue.dequeue());
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package mwong.myprojects.eightpuzzle;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac -cp jmh-core.jar RankBenchmark.java
+ *  Execution:   java -cp jmh-core.jar org.openjdk.jmh.Main RankBenchmark
+ *  Dependencies: PatternDatabase.java, BatchRanker.java, vector/VectorBatchRanker.java,
+ *                BenchmarkCorpus.java
+ *
+ *  JMH benchmark of the board to pattern index and pattern value, a lookup
+ *  per board against the scalar and the vector batch kernel of BatchRanker.
+ *  The forked JVM adds the jdk.incubator.vector module.
+ *
+ ****************************************************************************/
+
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RankBenchmark {
+    private static final int SIZE = 9;
+    private PatternDatabase pd;
+    private byte[][] blocks;
+    private byte[] boards;
+    private BatchRanker scalar;
+    private BatchRanker vector;
+    private int[] ranks;
+    private byte[] distances;
+
+    /**
+     *  Load the pattern database and the corpus in a contiguous array.
+     */
+    @Setup
+    public void setup() {
+        pd = Board.getPatterns();
+        blocks = BenchmarkCorpus.blocks(pd);
+        boards = new byte[BenchmarkCorpus.SIZE * SIZE];
+        for (int i = 0; i < BenchmarkCorpus.SIZE; i++) {
+            System.arraycopy(blocks[i], 0, boards, i * SIZE, SIZE);
+        }
+        scalar = new BatchRanker(false);
+        vector = new BatchRanker(true);
+        if (!vector.isVectorized()) {
+            throw new IllegalStateException("jdk.incubator.vector module is not available");
+        }
+        ranks = new int[BenchmarkCorpus.SIZE];
+        distances = new byte[BenchmarkCorpus.SIZE];
+    }
+
+    /**
+     *  Benchmark of a lookup of index and pattern value per board.
+     *
+     *  @param blackhole the given Blackhole of JMH
+     */
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public void keyIndex(Blackhole blackhole) {
+        for (byte[] tiles : blocks) {
+            blackhole.consume(pd.getPDvalue(pd.getKeyIndex(tiles)));
+        }
+    }
+
+    /**
+     *  Benchmark of the scalar batch kernel.
+     *
+     *  @return the distances of the corpus
+     */
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public byte[] scalarBatch() {
+        scalar.lookup(boards, 0, BenchmarkCorpus.SIZE, ranks, distances);
+        return distances;
+    }
+
+    /**
+     *  Benchmark of the vector batch kernel.
+     *
+     *  @return the distances of the corpus
+     */
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public byte[] vectorBatch() {
+        vector.lookup(boards, 0, BenchmarkCorpus.SIZE, ranks, distances);
+        return distances;
+    }
+}
@@ -0,0 +1,77 @@
+package mwong.myprojects.eightpuzzle;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac -cp jmh-core.jar SolverBenchmark.java
+ *  Execution:   java -cp jmh-core.jar org.openjdk.jmh.Main SolverBenchmark
+ *  Dependencies: Solver.java, Board.java, BenchmarkCorpus.java
+ *
+ *  JMH benchmark of full solver runs over the fixed seeded corpus
+ *
+ ****************************************************************************/
+
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SolverBenchmark {
+    private Board[] boards;
+    private int[] indices;
+    
+    /**
+     *  Load the pattern database and the corpus.
+     */
+    @Setup
+    public void setup() {
+        boards = BenchmarkCorpus.boards(new PatternDatabase());
+        indices = BenchmarkCorpus.indices();
+    }
+    
+    /**
+     *  Benchmark of the solver of each board, with the list of moves.
+     *  
+     *  @param blackhole the given Blackhole of JMH
+     */
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public void solver(Blackhole blackhole) {
+        for (Board board : boards) {
+            Solver solver = new Solver(board);
+            blackhole.consume(solver.moves());
+            blackhole.consume(solver.solution());
+        }
+    }
+    
+    /**
+     *  Benchmark of the allocation free solver on the pattern index.
+     *  
+     *  @param blackhole the given Blackhole of JMH
+     */
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public void packedMoves(Blackhole blackhole) {
+        for (int index : indices) {
+            blackhole.consume(Solver.minimumMoves(index));
+            blackhole.consume(Solver.packedMoves(index));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package mwong.myprojects.eightpuzzle;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/****************************************************************************
+ *  @author   Meisze Wong
+ *            www.linkedin.com/pub/macy-wong/46/550/37b/
+ *
+ *  Compilation: javac --add-modules jdk.incubator.vector -cp <classes of the
+ *               source files> vector/VectorBatchRanker.java
+ *  Dependencies: BatchRanker.java
+ *
+ *  The rank kernel of BatchRanker by the Vector API, a lane per board.
+ *  The tiles of a block of boards are transposed that each vector holds
+ *  the tiles of the same position, the lehmer digit of a tile is the tile
+ *  value less the earlier tiles smaller than it (pairwise compare of the
+ *  positions, no bit count per lane), the tiles after space use the weight
+ *  of one position before.  The boards after the last full block use the
+ *  scalar kernel.  Only loaded by BatchRanker if the module is present.
+ *  It is compiled apart from the other source files, javac *.java builds
+ *  without the incubator module.
+ *
+ ****************************************************************************/
+
+final class VectorBatchRanker implements BatchRanker.Kernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final int SIZE = 9;
+    private static final int SIZE_PERMUTATION = 20160;
+    private static final int ALL_TILES = (1 << SIZE) - 1;
+    // weight of the lehmer digit of the n-th tile, the last 2 tiles are fixed
+    private static final int[] WEIGHT = {2520, 360, 60, 12, 3, 1, 0, 0};
+
+    public void rank(byte[] boards, int first, int count, int[] ranks) {
+        // tiles of the block, position p of lane i at p * LANES + i
+        int[] column = new int[SIZE * LANES];
+        int end = first + count;
+        int i = first;
+        for (; i + LANES <= end; i += LANES) {
+            for (int lane = 0, offset = i * SIZE; lane < LANES; lane++) {
+                for (int pos = 0; pos < SIZE; pos++) {
+                    column[pos * LANES + lane] = boards[offset++] & 0xFF;
+                }
+            }
+            rankBlock(column, ranks, i);
+        }
+        for (; i < end; i++) {
+            ranks[i] = BatchRanker.rankOf(boards, i * SIZE);
+        }
+    }
+
+    public int lanes() {
+        return LANES;
+    }
+
+    // rank a block of boards of the transposed tiles, store at ranks[offset]
+    private static void rankBlock(int[] column, int[] ranks, int offset) {
+        IntVector zero = IntVector.zero(SPECIES);
+        IntVector one = IntVector.broadcast(SPECIES, 1);
+        IntVector used = zero;
+        IntVector zeroPos = zero;
+        IntVector rank = zero;
+        IntVector inversion = zero;
+        VectorMask<Integer> outOfRange = SPECIES.maskAll(false);
+        VectorMask<Integer> zeroBefore = SPECIES.maskAll(false);
+        for (int pos = 0; pos < SIZE; pos++) {
+            IntVector tile = IntVector.fromArray(SPECIES, column, pos * LANES);
+            outOfRange = outOfRange.or(tile.compare(VectorOperators.GT, SIZE - 1));
+            used = used.or(one.lanewise(VectorOperators.LSHL, tile));
+            VectorMask<Integer> isZero = tile.compare(VectorOperators.EQ, 0);
+            zeroPos = zeroPos.blend(pos, isZero);
+
+            // number of earlier tiles smaller than the tile, space excluded
+            IntVector smaller = zero;
+            for (int before = 0; before < pos; before++) {
+                IntVector earlier = IntVector.fromArray(SPECIES, column, before * LANES);
+                smaller = smaller.add(1, earlier.compare(VectorOperators.LT, tile)
+                        .andNot(earlier.compare(VectorOperators.EQ, 0)));
+            }
+            IntVector lehmer = tile.sub(1).sub(smaller).blend(0, isZero);
+            inversion = inversion.add(lehmer);
+            // the last position is the last tile or space, always weight 0
+            if (pos < WEIGHT.length) {
+                IntVector weight = IntVector.broadcast(SPECIES, WEIGHT[pos]);
+                if (pos > 0) {
+                    weight = weight.blend(WEIGHT[pos - 1], zeroBefore);
+                }
+                rank = rank.add(lehmer.mul(weight));
+            }
+            zeroBefore = zeroBefore.or(isZero);
+        }
+        IntVector index = zeroPos.mul(SIZE_PERMUTATION).add(rank);
+        index = index.blend(-1, inversion.and(1).compare(VectorOperators.NE, 0));
+        index = index.blend(-2, used.compare(VectorOperators.NE, ALL_TILES).or(outOfRange));
+        index.intoArray(ranks, offset);
+    }
+}